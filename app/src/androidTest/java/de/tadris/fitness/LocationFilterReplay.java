@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.tadris.fitness.data.WorkoutTrack;
+import de.tadris.fitness.util.GeoUtils;
+import de.tadris.fitness.util.LocationKalmanFilter;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a noisy fixture track through the {@link LocationKalmanFilter} and compares distance and
+ * speed jitter with the raw fixes. The fixture has neither accuracy nor bearing,
+ * so a constant accuracy is assumed and only positions are filtered.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocationFilterReplay {
+
+    private static final String TAG = "LocationFilterReplay";
+
+    private static final double NOISE = 3; // In meters
+    private static final double ASSUMED_ACCURACY = 10; // In meters
+
+    /**
+     * Maximum relative error of the filtered distance
+     */
+    private static final double MAX_ERROR = 0.15;
+
+    private ReplayFixture fixture;
+
+    @Before
+    public void setUp() {
+        fixture = new ReplayFixture(InstrumentationRegistry.getTargetContext(), NOISE);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Test
+    public void replayFixtureTrack() {
+        WorkoutTrack track = fixture.getTrack();
+        LocationKalmanFilter filter = new LocationKalmanFilter();
+        long filterTime = 0;
+        double rawDistance = 0, filteredDistance = 0;
+        double rawJitter = 0, filteredJitter = 0;
+        double lastRawSpeed = 0, lastFilteredSpeed = 0;
+        double lastLat = 0, lastLon = 0;
+        for (int i = 0; i < track.size(); i++) {
+            long start = System.nanoTime();
+            filter.update(track.getRelativeTime(i), track.getLat(i), track.getLon(i), ASSUMED_ACCURACY,
+                    Double.NaN, Double.NaN, Double.NaN);
+            filterTime += System.nanoTime() - start;
+
+            if (i > 0) {
+                double seconds = Math.max(track.getRelativeTime(i) - track.getRelativeTime(i - 1), 1) / 1000d;
+                double rawSegment = GeoUtils.sphericalDistance(track.getLat(i - 1), track.getLon(i - 1), track.getLat(i), track.getLon(i));
+                double filteredSegment = GeoUtils.sphericalDistance(lastLat, lastLon, filter.getLat(), filter.getLon());
+                rawDistance += rawSegment;
+                filteredDistance += filteredSegment;
+                // Change of the speed between fixes
+                rawJitter += Math.abs(rawSegment / seconds - lastRawSpeed);
+                filteredJitter += Math.abs(filter.getSpeed() - lastFilteredSpeed);
+                lastRawSpeed = rawSegment / seconds;
+            }
+            lastFilteredSpeed = filter.getSpeed();
+            lastLat = filter.getLat();
+            lastLon = filter.getLon();
+        }
+        Log.i(TAG, track.size() + " samples, distance " + (int) fixture.distance + " m true, " + (int) rawDistance + " m raw, " +
+                (int) filteredDistance + " m filtered, speed jitter " + String.format("%.2f", rawJitter / track.size()) +
+                " m/s raw, " + String.format("%.2f", filteredJitter / track.size()) + " m/s filtered, " +
+                filterTime / track.size() + " ns per fix");
+
+        double rawError = Math.abs(rawDistance - fixture.distance);
+        double filteredError = Math.abs(filteredDistance - fixture.distance);
+        assertTrue("Filtered distance off by " + (int) filteredError + " m", filteredError < MAX_ERROR * fixture.distance);
+        assertTrue(filteredError < rawError / 4);
+        assertTrue(filteredJitter < rawJitter / 2);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import android.content.Context;
+
+import androidx.room.Room;
+
+import org.mapsforge.core.util.LatLongUtils;
+
+import java.util.Random;
+
+import de.tadris.fitness.data.AppDatabase;
+import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutTrack;
+import de.tadris.fitness.data.WorkoutType;
+
+/**
+ * Synthetic running workout in an in-memory database for the replay tests. The track follows a circle
+ * in phases of different speed including a stop, with one sample per second and optional position
+ * noise from a seeded generator.
+ */
+class ReplayFixture {
+
+    static final long WORKOUT_ID = 1;
+    static final WorkoutType TYPE = WorkoutType.RUNNING;
+
+    /**
+     * Duration in seconds and speed in m/s of each phase
+     */
+    private static final double[][] PHASES = {{600, 3}, {120, 0}, {600, 3.5}, {300, 1.4}};
+
+    private static final double RADIUS = 150; // In meters
+    private static final double START_LAT = 50, START_LON = 8;
+    private static final double METERS_PER_DEGREE = Math.PI / 180 * LatLongUtils.EQUATORIAL_RADIUS;
+    private static final long SEED = 1;
+
+    final AppDatabase db;
+
+    /**
+     * Distance of the track without noise in meters
+     */
+    final double distance;
+
+    /**
+     * @param noise standard deviation of the position noise in meters on both axes
+     */
+    ReplayFixture(Context context, double noise) {
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        Random random = new Random(SEED);
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LAT));
+        int count = 1;
+        for (double[] phase : PHASES) {
+            count += (int) phase[0];
+        }
+        WorkoutSample[] samples = new WorkoutSample[count];
+        double east = 0, north = 0, heading = 0, distance = 0;
+        int i = 0;
+        for (double[] phase : PHASES) {
+            double speed = phase[1];
+            for (int second = 0; second < phase[0]; second++) {
+                samples[i] = createSample(i, east, north, speed, noise, random, metersPerDegreeLon);
+                i++;
+                heading += speed / RADIUS;
+                east += speed * Math.sin(heading);
+                north += speed * Math.cos(heading);
+                distance += speed;
+            }
+        }
+        samples[i] = createSample(i, east, north, 0, noise, random, metersPerDegreeLon);
+        this.distance = distance;
+
+        Workout workout = new Workout();
+        workout.id = WORKOUT_ID;
+        workout.workoutTypeId = TYPE.id;
+        workout.duration = samples[i].relativeTime;
+        workout.end = workout.duration;
+        workout.length = (int) distance;
+        db.workoutDao().insertWorkoutAndSamples(workout, samples);
+    }
+
+    private static WorkoutSample createSample(int index, double east, double north, double speed, double noise,
+                                              Random random, double metersPerDegreeLon) {
+        WorkoutSample sample = new WorkoutSample();
+        sample.id = index;
+        sample.workoutId = WORKOUT_ID;
+        sample.relativeTime = index * 1000L;
+        sample.absoluteTime = sample.relativeTime;
+        sample.lat = START_LAT + (north + random.nextGaussian() * noise) / METERS_PER_DEGREE;
+        sample.lon = START_LON + (east + random.nextGaussian() * noise) / metersPerDegreeLon;
+        sample.speed = speed;
+        return sample;
+    }
+
+    WorkoutTrack getTrack() {
+        return db.workoutDao().getTrackOfWorkout(WORKOUT_ID);
+    }
+
+    void close() {
+        db.close();
+    }
+}
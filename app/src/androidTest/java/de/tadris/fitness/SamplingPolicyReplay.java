@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import de.tadris.fitness.data.WorkoutTrack;
+import de.tadris.fitness.data.WorkoutType;
+import de.tadris.fitness.recording.SamplingPolicy;
+import de.tadris.fitness.util.GeoUtils;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a fixture track with the {@link SamplingPolicy} and compares how many fixes are requested
+ * and how far the recorded distance is off with fixes every second.
+ * Fixes are interpolated from the noise-free fixture samples, which are the true track.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SamplingPolicyReplay {
+
+    private static final String TAG = "SamplingPolicyReplay";
+
+    private static final long FIXED_INTERVAL = 1000;
+
+    /**
+     * Maximum relative error of the recorded distance
+     */
+    private static final double MAX_ERROR = 0.01;
+
+    /**
+     * Adaptive sampling has to save at least this share of the fixes
+     */
+    private static final double MIN_SAVING = 0.2;
+
+    private ReplayFixture fixture;
+
+    @Before
+    public void setUp() {
+        fixture = new ReplayFixture(InstrumentationRegistry.getTargetContext(), 0);
+    }
+
+    @After
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Test
+    public void replayFixtureTrack() {
+        WorkoutTrack track = fixture.getTrack();
+        double distance = fixture.distance;
+        Result fixed = replay(track, ReplayFixture.TYPE, null);
+        Result adaptive = replay(track, ReplayFixture.TYPE, new SamplingPolicy(ReplayFixture.TYPE));
+        Log.i(TAG, (int) distance + " m: " +
+                fixed.fixes + " fixes with " + formatError(fixed.distance, distance) + " error fixed, " +
+                adaptive.fixes + " fixes with " + formatError(adaptive.distance, distance) + " error adaptive");
+
+        assertTrue(Math.abs(fixed.distance - distance) < MAX_ERROR * distance);
+        assertTrue("Adaptive distance off by " + formatError(adaptive.distance, distance),
+                Math.abs(adaptive.distance - distance) < MAX_ERROR * distance);
+        assertTrue(adaptive.fixes < (1 - MIN_SAVING) * fixed.fixes);
+    }
+
+    private static String formatError(double distance, double trackDistance) {
+        return String.format("%.2f", 100 * (distance - trackDistance) / trackDistance) + "%";
+    }
+
+    /**
+     * Requests fixes like the LocationListener and drops samples like the recorder
+     *
+     * @param policy the policy or null for fixes every second and the minimum distance of the type
+     */
+    private static Result replay(WorkoutTrack track, WorkoutType type, SamplingPolicy policy) {
+        Result result = new Result();
+        int index = 0;
+        double lastLat = track.getLat(0), lastLon = track.getLon(0);
+        long end = track.getRelativeTime(track.size() - 1);
+        for (long time = track.getRelativeTime(0); time <= end; ) {
+            while (track.getRelativeTime(index + 1) < time) {
+                index++;
+            }
+            long start = track.getRelativeTime(index);
+            long duration = track.getRelativeTime(index + 1) - start;
+            double progress = duration > 0 ? (double) (time - start) / duration : 1;
+            double lat = track.getLat(index) + (track.getLat(index + 1) - track.getLat(index)) * progress;
+            double lon = track.getLon(index) + (track.getLon(index + 1) - track.getLon(index)) * progress;
+            float speed = track.getSpeed(index + 1);
+            result.fixes++;
+
+            double minDistance = type.minDistance;
+            long interval = FIXED_INTERVAL;
+            if (policy != null) {
+                policy.onFix(time, speed);
+                minDistance = policy.getMinDistance();
+                interval = policy.getInterval();
+            }
+            double segment = GeoUtils.sphericalDistance(lastLat, lastLon, lat, lon);
+            if (segment >= minDistance) {
+                result.distance += segment;
+                lastLat = lat;
+                lastLon = lon;
+            }
+            time += interval;
+        }
+        return result;
+    }
+
+    private static class Result {
+        int fixes;
+        double distance;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares loading and deleting the samples of a single workout with and without the
+ * (workout_id, relativeTime) index on a history of 1.2 million samples.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkoutSampleIndexBenchmark {
+
+    private static final String TAG = "SampleIndexBenchmark";
+
+    private static final int WORKOUT_COUNT = 400;
+    private static final int SAMPLES_PER_WORKOUT = 3000;
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("PRAGMA foreign_keys = ON");
+        db.execSQL("CREATE TABLE workout (id INTEGER NOT NULL PRIMARY KEY)");
+        db.execSQL("CREATE TABLE workout_sample (" +
+                "id INTEGER NOT NULL PRIMARY KEY," +
+                "relativeTime INTEGER NOT NULL," +
+                "elevation REAL NOT NULL," +
+                "absoluteTime INTEGER NOT NULL," +
+                "lat REAL NOT NULL," +
+                "lon REAL NOT NULL," +
+                "speed REAL NOT NULL," +
+                "workout_id INTEGER NOT NULL," +
+                "FOREIGN KEY (workout_id) REFERENCES workout(id) ON DELETE CASCADE)");
+        fillHistory();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * Workouts are inserted interleaved so that the samples of one workout are spread over the whole table,
+     * like they are after years of recording with the old schema.
+     */
+    private void fillHistory() {
+        db.beginTransaction();
+        try {
+            for (int w = 0; w < WORKOUT_COUNT; w++) {
+                db.execSQL("INSERT INTO workout (id) VALUES (" + w + ")");
+            }
+            SQLiteStatement insert = db.compileStatement("INSERT INTO workout_sample " +
+                    "(id, relativeTime, elevation, absoluteTime, lat, lon, speed, workout_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            long id = 0;
+            for (int s = 0; s < SAMPLES_PER_WORKOUT; s++) {
+                for (int w = 0; w < WORKOUT_COUNT; w++) {
+                    insert.bindLong(1, id++);
+                    insert.bindLong(2, s * 1000L);
+                    insert.bindDouble(3, 100);
+                    insert.bindLong(4, s * 1000L);
+                    insert.bindDouble(5, 50 + s * 0.0001);
+                    insert.bindDouble(6, 8 + w * 0.0001);
+                    insert.bindDouble(7, 3);
+                    insert.bindLong(8, w);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void compareWithAndWithoutIndex() {
+        long loadWithoutIndex = timeLoad(WORKOUT_COUNT / 2);
+        long deleteWithoutIndex = timeDelete(WORKOUT_COUNT / 2);
+
+        db.execSQL("CREATE INDEX index_workout_sample_workout_id_relativeTime ON workout_sample (workout_id, relativeTime)");
+
+        long loadWithIndex = timeLoad(WORKOUT_COUNT / 2 + 1);
+        long deleteWithIndex = timeDelete(WORKOUT_COUNT / 2 + 1);
+
+        Log.i(TAG, "Samples in history: " + WORKOUT_COUNT * SAMPLES_PER_WORKOUT);
+        Log.i(TAG, "Load one workout:   " + loadWithoutIndex + " ms without index, " + loadWithIndex + " ms with index");
+        Log.i(TAG, "Delete one workout: " + deleteWithoutIndex + " ms without index, " + deleteWithIndex + " ms with index");
+    }
+
+    private long timeLoad(long workoutId) {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        try (Cursor cursor = db.rawQuery("SELECT * FROM workout_sample WHERE workout_id = ? ORDER BY relativeTime",
+                new String[]{String.valueOf(workoutId)})) {
+            while (cursor.moveToNext()) {
+                count++;
+            }
+        }
+        long time = System.currentTimeMillis() - start;
+        assertEquals(SAMPLES_PER_WORKOUT, count);
+        return time;
+    }
+
+    private long timeDelete(long workoutId) {
+        long start = System.currentTimeMillis();
+        db.execSQL("DELETE FROM workout WHERE id = " + workoutId);
+        return System.currentTimeMillis() - start;
+    }
+}
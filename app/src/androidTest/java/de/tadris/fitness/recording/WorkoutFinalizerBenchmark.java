@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.hardware.SensorManager;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutBounds;
+import de.tadris.fitness.data.WorkoutSample;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares finishing a workout with 50000 samples with the previous implementation,
+ * which made one pass for every value and removed duplicate samples one by one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorkoutFinalizerBenchmark {
+
+    private static final String TAG = "FinalizerBenchmark";
+
+    private static final int SAMPLE_COUNT = 50000;
+    private static final int SMOOTHING_RANGE = 7;
+
+    @Test
+    public void compareWithMultiPass() {
+        Workout oldWorkout = createWorkout();
+        List<WorkoutSample> oldSamples = createSamples();
+        long start = System.currentTimeMillis();
+        finishMultiPass(oldWorkout, oldSamples);
+        long oldTime = System.currentTimeMillis() - start;
+
+        Workout newWorkout = createWorkout();
+        List<WorkoutSample> newSamples = createSamples();
+        start = System.currentTimeMillis();
+        WorkoutFinalizer finalizer = new WorkoutFinalizer(newWorkout, newSamples, null, null);
+        finalizer.finish(80);
+        WorkoutSample[] result = finalizer.getSamples();
+        long newTime = System.currentTimeMillis() - start;
+
+        Log.i(TAG, "Samples: " + SAMPLE_COUNT + ", after removing duplicates: " + result.length);
+        Log.i(TAG, "Finish workout: " + oldTime + " ms multi pass, " + newTime + " ms single pass");
+
+        assertEquals(oldSamples.size(), result.length);
+        assertEquals(oldWorkout.length, newWorkout.length);
+        assertEquals(oldWorkout.topSpeed, newWorkout.topSpeed, 0.001);
+        assertEquals(oldWorkout.ascent, newWorkout.ascent, 1);
+        assertEquals(oldWorkout.descent, newWorkout.descent, 1);
+        for (int i = 0; i < result.length; i++) {
+            assertEquals(oldSamples.get(i).elevation, result[i].elevation, 0.01);
+        }
+    }
+
+    private Workout createWorkout() {
+        Workout workout = new Workout();
+        workout.id = 1;
+        workout.duration = SAMPLE_COUNT * 1000L;
+        workout.workoutTypeId = "running";
+        return workout;
+    }
+
+    /**
+     * A run with a barometer, every 100th location is delivered twice
+     */
+    private List<WorkoutSample> createSamples() {
+        List<WorkoutSample> samples = new ArrayList<>();
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            WorkoutSample sample = new WorkoutSample();
+            long time = i % 100 == 1 ? i - 1 : i;
+            sample.absoluteTime = time * 1000;
+            sample.relativeTime = time * 1000;
+            sample.lat = 50 + Math.sin(i / 500d) * 0.01;
+            sample.lon = 8 + i * 0.00003;
+            sample.elevation = 200 + Math.sin(i / 300d) * 50 + (i % 3);
+            sample.speed = 3 + Math.sin(i / 50d);
+            sample.tmpPressure = 1000 - (float) Math.sin(i / 300d) * 6 + (i % 5) * 0.05f;
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    /**
+     * The previous implementation of WorkoutSaver without altitude correction and storage
+     */
+    private void finishMultiPass(Workout workout, List<WorkoutSample> samples) {
+        int i = 0;
+        for (WorkoutSample sample : samples) {
+            i++;
+            sample.id = workout.id + i;
+            sample.workoutId = workout.id;
+        }
+
+        for (i = samples.size() - 2; i >= 0; i--) {
+            WorkoutSample sample = samples.get(i);
+            WorkoutSample lastSample = samples.get(i + 1);
+            if (sample.absoluteTime == lastSample.absoluteTime) {
+                samples.remove(lastSample);
+            }
+        }
+
+        double length = 0;
+        for (i = 1; i < samples.size(); i++) {
+            length += samples.get(i - 1).toLatLong().sphericalDistance(samples.get(i).toLatLong());
+        }
+        workout.length = (int) length;
+
+        double topSpeed = 0;
+        for (WorkoutSample sample : samples) {
+            if (sample.speed > topSpeed) {
+                topSpeed = sample.speed;
+            }
+        }
+        workout.topSpeed = topSpeed;
+
+        double avgElevation = getAverageElevation(samples);
+        double pressureSum = 0;
+        for (WorkoutSample sample : samples) {
+            pressureSum += sample.tmpPressure;
+        }
+        double avgPressure = pressureSum / samples.size();
+        for (WorkoutSample sample : samples) {
+            float altitudeDifference =
+                    SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, sample.tmpPressure) -
+                            SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, (float) avgPressure);
+            sample.elevation = avgElevation + altitudeDifference;
+        }
+
+        for (i = 0; i < samples.size(); i++) {
+            int minIndex = Math.max(i - SMOOTHING_RANGE, 0);
+            int maxIndex = Math.min(i + SMOOTHING_RANGE, samples.size() - 1);
+            samples.get(i).tmpElevation = getAverageElevation(samples.subList(minIndex, maxIndex));
+        }
+        for (i = 0; i < samples.size(); i++) {
+            WorkoutSample sample = samples.get(i);
+            sample.elevation = sample.tmpElevation;
+            if (i >= 1) {
+                double diff = sample.elevation - samples.get(i - 1).elevation;
+                if (diff > 0) {
+                    workout.ascent += diff;
+                } else {
+                    workout.descent += Math.abs(diff);
+                }
+            }
+        }
+
+        WorkoutBounds bounds = new WorkoutBounds();
+        for (WorkoutSample sample : samples) {
+            bounds.add(sample.lat, sample.lon);
+        }
+        bounds.applyTo(workout);
+    }
+
+    private double getAverageElevation(List<WorkoutSample> samples) {
+        double elevationSum = 0;
+        for (WorkoutSample sample : samples) {
+            elevationSum += sample.elevation;
+        }
+        return elevationSum / samples.size();
+    }
+}
@@ -23,15 +23,25 @@ import android.content.Context;
 
 import androidx.annotation.NonNull;
 import androidx.room.Room;
+import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 import de.tadris.fitness.data.AppDatabase;
+import de.tadris.fitness.data.BestEfforts;
+import de.tadris.fitness.data.SimplifiedTrack;
 import de.tadris.fitness.data.UserPreferences;
-import de.tadris.fitness.recording.LocationListener;
+import de.tadris.fitness.data.WorkoutAggregates;
+import de.tadris.fitness.data.WorkoutBounds;
+import de.tadris.fitness.data.WorkoutCells;
+import de.tadris.fitness.data.WorkoutRepository;
+import de.tadris.fitness.data.WorkoutSearch;
+import de.tadris.fitness.data.WorkoutSplits;
+import de.tadris.fitness.map.heatmap.HeatmapStore;
+import de.tadris.fitness.recording.LocationDispatcher;
+import de.tadris.fitness.recording.RecordingTimer;
 import de.tadris.fitness.util.FitoTrackThemes;
 import de.tadris.fitness.util.unit.UnitUtils;
 
@@ -49,9 +59,12 @@ public class Instance {
     }
 
     public final AppDatabase db;
-    public final List<LocationListener.LocationChangeListener> locationChangeListeners = new ArrayList<>();
+    public final WorkoutRepository workoutRepository;
+    public final LocationDispatcher locationDispatcher = new LocationDispatcher();
+    public final RecordingTimer recordingTimer = new RecordingTimer();
     public final UserPreferences userPreferences;
     public final FitoTrackThemes themes;
+    public final HeatmapStore heatmapStore;
 
     private boolean pressureAvailable= false;
     public float lastPressure= 0;
@@ -59,6 +72,8 @@ public class Instance {
     private Instance(Context context) {
         userPreferences= new UserPreferences(context);
         themes = new FitoTrackThemes(context);
+        WorkoutSearch.init(context);
+        WorkoutAggregates.init(context);
         db = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, DATABASE_NAME)
                 .addMigrations(new Migration(1, 2) {
                     @Override
@@ -105,9 +120,270 @@ public class Instance {
                             database.endTransaction();
                         }
                     }
+                }, new Migration(3, 4) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Samples are always read and deleted per workout, so keep them clustered by workout
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_sample_workout_id_relativeTime ON workout_sample (workout_id, relativeTime)");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(4, 5) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_track (" +
+                                    "workout_id INTEGER NOT NULL," +
+                                    "sampleCount INTEGER NOT NULL," +
+                                    "data BLOB," +
+                                    "PRIMARY KEY(workout_id)," +
+                                    "FOREIGN KEY (workout_id) REFERENCES workout(id) ON DELETE CASCADE);");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(5, 6) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_start ON workout (start)");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(6, 7) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_aggregate (period TEXT NOT NULL, periodStart TEXT NOT NULL, workoutType TEXT NOT NULL, " +
+                                    "count INTEGER NOT NULL, distance INTEGER NOT NULL, duration INTEGER NOT NULL, ascent REAL NOT NULL, calorie INTEGER NOT NULL, " +
+                                    "PRIMARY KEY(period, periodStart, workoutType))");
+                            WorkoutAggregates.createTriggers(database);
+                            WorkoutAggregates.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(7, 8) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_cell (cell TEXT NOT NULL, workout_id INTEGER NOT NULL, " +
+                                    "PRIMARY KEY(cell, workout_id), FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_cell_workout_id ON workout_cell (workout_id)");
+                            WorkoutCells.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot index stored tracks", e);
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(8, 9) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS workout_search USING FTS4(comment TEXT, type TEXT, date TEXT, tokenize=unicode61)");
+                            WorkoutSearch.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(9, 10) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Levels of existing workouts are computed by the migration to version 18
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_simplified (workout_id INTEGER NOT NULL, level INTEGER NOT NULL, " +
+                                    "pointCount INTEGER NOT NULL, indices BLOB, PRIMARY KEY(workout_id, level), " +
+                                    "FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(10, 11) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("ALTER TABLE workout ADD COLUMN minLat REAL");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN minLon REAL");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN maxLat REAL");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN maxLon REAL");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN startCell TEXT");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN endCell TEXT");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_minLat_maxLat_minLon_maxLon ON workout (minLat, maxLat, minLon, maxLon)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_startCell ON workout (startCell)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_endCell ON workout (endCell)");
+                            WorkoutBounds.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot read stored tracks", e);
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(11, 12) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Existing workouts are fingerprinted in the background, see WorkoutRepository#indexMissingRoutes
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_route (workout_id INTEGER NOT NULL, routeId INTEGER NOT NULL, signature BLOB, " +
+                                    "PRIMARY KEY(workout_id), FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_route_routeId ON workout_route (routeId)");
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_route_band (band INTEGER NOT NULL, hash INTEGER NOT NULL, workout_id INTEGER NOT NULL, " +
+                                    "PRIMARY KEY(band, hash, workout_id), FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_route_band_workout_id ON workout_route_band (workout_id)");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(12, 13) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            database.execSQL("CREATE TABLE IF NOT EXISTS best_effort (workout_id INTEGER NOT NULL, workoutType TEXT, distance INTEGER NOT NULL, " +
+                                    "duration INTEGER NOT NULL, startTime INTEGER NOT NULL, PRIMARY KEY(workout_id, distance), " +
+                                    "FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_best_effort_workoutType_distance_duration ON best_effort (workoutType, distance, duration)");
+                            BestEfforts.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot read stored tracks", e);
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(13, 14) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Splits of existing workouts are calculated by the migration to version 17
+                            database.execSQL("CREATE TABLE IF NOT EXISTS workout_split (workout_id INTEGER NOT NULL, splitLength INTEGER NOT NULL, number INTEGER NOT NULL, " +
+                                    "distance REAL NOT NULL, duration INTEGER NOT NULL, ascent REAL NOT NULL, descent REAL NOT NULL, " +
+                                    "PRIMARY KEY(workout_id, splitLength, number), " +
+                                    "FOREIGN KEY(workout_id) REFERENCES workout(id) ON UPDATE NO ACTION ON DELETE CASCADE)");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(14, 15) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // The shingles of the route fingerprints changed, all workouts are fingerprinted again in the background
+                            database.execSQL("DELETE FROM workout_route_band");
+                            database.execSQL("DELETE FROM workout_route");
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(15, 16) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // The index on the bounding box columns only narrowed down the minimum latitude
+                            database.execSQL("DROP INDEX IF EXISTS index_workout_minLat_maxLat_minLon_maxLon");
+                            database.execSQL("ALTER TABLE workout ADD COLUMN boxCell TEXT");
+                            database.execSQL("CREATE INDEX IF NOT EXISTS index_workout_boxCell ON workout (boxCell)");
+                            WorkoutBounds.updateBoxCells(database);
+
+                            database.setTransactionSuccessful();
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(16, 17) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Splits are stored for all unit systems instead of being calculated when a workout is opened
+                            WorkoutSplits.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot read stored tracks", e);
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                }, new Migration(17, 18) {
+                    @Override
+                    public void migrate(@NonNull SupportSQLiteDatabase database) {
+                        try {
+                            database.beginTransaction();
+
+                            // Loading a track doesn't store missing levels anymore
+                            SimplifiedTrack.rebuild(database);
+
+                            database.setTransactionSuccessful();
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot read stored tracks", e);
+                        } finally {
+                            database.endTransaction();
+                        }
+                    }
+                })
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase database) {
+                        WorkoutAggregates.createTriggers(database);
+                    }
                 })
-                .allowMainThreadQueries()
                 .build();
+        workoutRepository = new WorkoutRepository(db);
+        workoutRepository.indexMissingRoutes();
+        heatmapStore = new HeatmapStore(context.getApplicationContext());
         UnitUtils.setUnit(context);
     }
 
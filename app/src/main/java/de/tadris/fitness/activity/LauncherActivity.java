@@ -20,12 +20,15 @@
 package de.tadris.fitness.activity;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.widget.Toast;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
+import de.tadris.fitness.recording.WorkoutRecorder;
 
 public class LauncherActivity extends Activity {
 
@@ -44,9 +47,19 @@ public class LauncherActivity extends Activity {
 
     private void init() {
         Instance.getInstance(this);
+        recoverInterruptedWorkouts();
         start();
     }
 
+    private void recoverInterruptedWorkouts() {
+        Context context = getApplicationContext();
+        WorkoutRecorder.recoverInterruptedWorkouts(context, recovered -> {
+            if (recovered > 0) {
+                Toast.makeText(context, R.string.recoveredWorkout, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
     private void start() {
         startActivity(new Intent(this, ListWorkoutsActivity.class));
         finish();
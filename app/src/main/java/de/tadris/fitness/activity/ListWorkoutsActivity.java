@@ -27,6 +27,7 @@ import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.SearchView;
 
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -35,18 +36,22 @@ import com.github.clans.fab.FloatingActionMenu;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
-import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutRepository;
+import de.tadris.fitness.data.WorkoutSummary;
 import de.tadris.fitness.data.WorkoutType;
 import de.tadris.fitness.util.DialogUtils;
 import de.tadris.fitness.view.WorkoutAdapter;
 
 public class ListWorkoutsActivity extends FitoTrackActivity implements WorkoutAdapter.WorkoutAdapterListener {
 
+    private static final int MAX_SEARCH_RESULTS = 200;
+
     private RecyclerView listView;
-    private RecyclerView.Adapter adapter;
+    private WorkoutAdapter adapter;
     private RecyclerView.LayoutManager layoutManager;
     private FloatingActionMenu menu;
-    private Workout[] workouts;
+    private WorkoutType lastWorkoutType;
+    private String searchQuery = "";
 
 
     @Override
@@ -62,8 +67,8 @@ public class ListWorkoutsActivity extends FitoTrackActivity implements WorkoutAd
 
         menu= findViewById(R.id.workoutListMenu);
         menu.setOnMenuButtonLongClickListener(v -> {
-            if(workouts.length > 0){
-                startRecording(workouts[0].getWorkoutType());
+            if(lastWorkoutType != null){
+                startRecording(lastWorkoutType);
                 return true;
             }else{
                 return false;
@@ -114,40 +119,71 @@ public class ListWorkoutsActivity extends FitoTrackActivity implements WorkoutAd
     }
 
     @Override
-    public void onItemClick(int pos, Workout workout) {
-        WorkoutActivity.setSelectedWorkout(workout);
-        startActivity(new Intent(this, ShowWorkoutActivity.class));
+    public void onItemClick(int pos, WorkoutSummary summary) {
+        Instance.getInstance(this).workoutRepository.getWorkoutById(summary.id, workout -> {
+            if(workout == null){
+                refresh();
+                return;
+            }
+            WorkoutActivity.setSelectedWorkout(workout);
+            startActivity(new Intent(this, ShowWorkoutActivity.class));
+        });
     }
 
     @Override
-    public void onItemLongClick(int pos, Workout workout) {
-        DialogUtils.showDeleteWorkoutDialog(this, () -> {
-            Instance.getInstance(ListWorkoutsActivity.this).db.workoutDao().deleteWorkout(workout);
-            refresh();
-        });
+    public void onItemLongClick(int pos, WorkoutSummary summary) {
+        DialogUtils.showDeleteWorkoutDialog(this, () ->
+                Instance.getInstance(ListWorkoutsActivity.this).workoutRepository.deleteWorkout(summary.id, this::refresh));
     }
 
     private void refresh() {
-        loadData();
-        refreshAdapter();
-    }
-
-    private void loadData(){
-        workouts= Instance.getInstance(this).db.workoutDao().getWorkouts();
-    }
-
-    private void refreshAdapter(){
-        adapter= new WorkoutAdapter(workouts, this);
-        listView.setAdapter(adapter);
+        if(!searchQuery.isEmpty()){
+            search(searchQuery);
+            return;
+        }
+        WorkoutRepository repository= Instance.getInstance(this).workoutRepository;
+        repository.getWorkoutCount(count -> {
+            // The adapter only loads the pages which are visible
+            adapter= new WorkoutAdapter(repository, count, this);
+            listView.setAdapter(adapter);
+        });
+        repository.getWorkoutSummaries(0, 1, latest -> lastWorkoutType= latest.length > 0 ? latest[0].getWorkoutType() : null);
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.list_workout_menu, menu);
+
+        SearchView searchView= (SearchView) menu.findItem(R.id.actionSearch).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchQuery= newText.trim();
+                refresh();
+                return true;
+            }
+        });
         return true;
     }
 
+    private void search(String query){
+        Instance.getInstance(this).workoutRepository.searchWorkouts(query, MAX_SEARCH_RESULTS, results -> {
+            if(!query.equals(searchQuery)){
+                // The query changed in the meantime
+                return;
+            }
+            adapter= new WorkoutAdapter(results, this);
+            listView.setAdapter(adapter);
+        });
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -156,6 +192,10 @@ public class ListWorkoutsActivity extends FitoTrackActivity implements WorkoutAd
             startActivity(new Intent(this, SettingsActivity.class));
             return true;
         }
+        if (id == R.id.actionRecords) {
+            startActivity(new Intent(this, RecordsActivity.class));
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
@@ -41,24 +41,22 @@ import android.widget.TextView;
 
 import androidx.core.app.ActivityCompat;
 
-import org.mapsforge.core.graphics.Paint;
-import org.mapsforge.core.graphics.Style;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.android.view.MapView;
 import org.mapsforge.map.layer.download.TileDownloadLayer;
-import org.mapsforge.map.layer.overlay.Polyline;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
 import de.tadris.fitness.data.WorkoutType;
+import de.tadris.fitness.map.LiveRouteLayer;
 import de.tadris.fitness.map.MapManager;
 import de.tadris.fitness.recording.LocationListener;
 import de.tadris.fitness.recording.PressureService;
 import de.tadris.fitness.recording.WorkoutRecorder;
+import de.tadris.fitness.recording.WorkoutStatistics;
 import de.tadris.fitness.recording.announcement.AnnouncementGPSStatus;
 import de.tadris.fitness.recording.announcement.VoiceAnnouncements;
 import de.tadris.fitness.util.unit.UnitUtils;
@@ -70,8 +68,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
     private MapView mapView;
     private TileDownloadLayer downloadLayer;
     private WorkoutRecorder recorder;
-    private Polyline polyline;
-    private final List<LatLong> latLongList = new ArrayList<>();
+    private LiveRouteLayer routeLayer;
     private final InfoViewHolder[] infoViews = new InfoViewHolder[4];
     private TextView timeView;
     private TextView gpsStatusView;
@@ -84,6 +81,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
     private Intent locationListener;
     private Intent pressureService;
     private boolean saved= false;
+    private ScheduledFuture<?> updater;
 
     private VoiceAnnouncements voiceAnnouncements;
 
@@ -122,7 +120,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
         startUpdater();
         acquireWakelock();
 
-        Instance.getInstance(this).locationChangeListeners.add(this);
+        Instance.getInstance(this).locationDispatcher.subscribe(this, mHandler);
 
         startListener();
 
@@ -158,40 +156,26 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
     private void setupMap(){
         this.mapView= new MapView(this);
         downloadLayer = MapManager.setupMap(mapView);
+        routeLayer= new LiveRouteLayer(getThemePrimaryColor());
+        mapView.addLayer(routeLayer);
     }
 
-    private void updateLine(){
-        if(polyline != null){
-            mapView.getLayerManager().getLayers().remove(polyline);
-        }
-        Paint p= AndroidGraphicFactory.INSTANCE.createPaint();
-        p.setColor(getThemePrimaryColor());
-        p.setStrokeWidth(20);
-        p.setStyle(Style.STROKE);
-        polyline= new Polyline(p, AndroidGraphicFactory.INSTANCE);
-        polyline.setPoints(latLongList);
-        mapView.addLayer(polyline);
+    private void startUpdater(){
+        updater= Instance.getInstance(this).recordingTimer.scheduleTicks(() -> mHandler.post(this::updateDescription), 1000);
     }
 
-    private void startUpdater(){
-        new Thread(() -> {
-            try{
-                while (recorder.isActive()){
-                    Thread.sleep(1000);
-                    mHandler.post(this::updateDescription);
-                }
-            }catch (InterruptedException e){
-                // Restore the interrupt status to ensure the caller is aware of the interruption.
-                Thread.currentThread().interrupt();
-                e.printStackTrace();
-            }
-        }).start();
+    private void stopUpdater(){
+        if(updater != null){
+            updater.cancel(false);
+            updater= null;
+        }
     }
 
 
     private void updateDescription() {
         long duration = recorder.getDuration();
-        int distanceInMeters = recorder.getDistanceInMeters();
+        WorkoutStatistics.Snapshot statistics = recorder.getStatistics();
+        int distanceInMeters = (int) statistics.distance;
         final String distanceCaption = getString(R.string.workoutDistance);
         final String distance = UnitUtils.getDistance(distanceInMeters);
         final String avgSpeed = UnitUtils.getSpeed(Math.min(100d, recorder.getAvgSpeed()));
@@ -209,6 +193,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
 
     private void stop(){
         recorder.stop();
+        stopUpdater();
         if(recorder.getSampleCount() > 3){
             showEnterDescriptionDialog();
         }else{
@@ -225,6 +210,8 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
         if(recorder.getSampleCount() > 3){
             recorder.save();
             saved= true;
+        }else{
+            recorder.discard();
         }
     }
 
@@ -293,6 +280,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
     private void startListener() {
         if(locationListener == null){
             locationListener= new Intent(this, LocationListener.class);
+            locationListener.putExtra(LocationListener.EXTRA_WORKOUT_TYPE, ACTIVITY.id);
             pressureService= new Intent(this, PressureService.class);
         }else{
             stopListener();
@@ -329,13 +317,13 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
     public void onLocationChange(Location location) {
         LatLong latLong= LocationListener.locationToLatLong(location);
         mapView.getModel().mapViewPosition.animateTo(latLong);
-        latLongList.add(latLong);
-        updateLine();
+        routeLayer.addPoint(latLong);
     }
 
     @Override
     protected void onDestroy() {
         recorder.stop();
+        stopUpdater();
         saveIfNotSaved(); // Important to save
 
         // Clear map
@@ -349,7 +337,7 @@ public class RecordWorkoutActivity extends FitoTrackActivity implements Location
         if(wakeLock.isHeld()){
             wakeLock.release();
         }
-        Instance.getInstance(this).locationChangeListeners.remove(this);
+        Instance.getInstance(this).locationDispatcher.unsubscribe(this);
         stopListener();
     }
 
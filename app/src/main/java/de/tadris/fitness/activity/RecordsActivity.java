@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.activity;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.MenuItem;
+
+import androidx.annotation.StringRes;
+
+import de.tadris.fitness.Instance;
+import de.tadris.fitness.R;
+import de.tadris.fitness.data.BestEffort;
+import de.tadris.fitness.data.WorkoutType;
+import de.tadris.fitness.util.unit.UnitUtils;
+
+/**
+ * Shows the fastest segment of all workouts for every standard distance, see {@link BestEffort}
+ */
+public class RecordsActivity extends InformationActivity {
+
+    @StringRes
+    private static final int[] DISTANCE_TITLES = {R.string.bestEffort400m, R.string.bestEffort1km,
+            R.string.bestEffort5km, R.string.bestEffort10km, R.string.bestEffortHalfMarathon};
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_records);
+        root = findViewById(R.id.recordsRoot);
+        setTitle(R.string.records);
+        setupActionBar();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        Instance.getInstance(this).workoutRepository.getRecords(this::showRecords);
+    }
+
+    private void showRecords(BestEffort[] records) {
+        if (isDestroyed()) {
+            return;
+        }
+        root.removeAllViews();
+        if (records.length == 0) {
+            addText(getString(R.string.noRecords), false);
+            return;
+        }
+        for (WorkoutType type : WorkoutType.values()) {
+            boolean hasTitle = false;
+            for (int i = 0; i < BestEffort.DISTANCES.length; i++) {
+                BestEffort record = findRecord(records, type, BestEffort.DISTANCES[i]);
+                if (record == null) {
+                    continue;
+                }
+                if (!hasTitle) {
+                    addTitle(getString(type.title));
+                    hasTitle = true;
+                }
+                double pace = (record.duration / 1000d / 60d) / (record.distance / 1000d);
+                KeyValueLine line = addKeyValueLine(getString(DISTANCE_TITLES[i]),
+                        UnitUtils.getHourMinuteSecondTime(record.duration) + " (" + UnitUtils.getPace(pace) + ")");
+                line.lineRoot.setOnClickListener(v -> showWorkout(record.workoutId));
+            }
+        }
+    }
+
+    private BestEffort findRecord(BestEffort[] records, WorkoutType type, int distance) {
+        for (BestEffort record : records) {
+            if (record.getWorkoutType() == type && record.distance == distance) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private void showWorkout(long workoutId) {
+        Instance.getInstance(this).workoutRepository.getWorkoutById(workoutId, workout -> {
+            if (workout == null) {
+                return;
+            }
+            WorkoutActivity.setSelectedWorkout(workout);
+            startActivity(new Intent(this, ShowWorkoutActivity.class));
+        });
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (MenuUtils.handleHomeButton(this, item)) {
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
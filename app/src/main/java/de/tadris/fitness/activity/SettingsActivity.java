@@ -40,6 +40,7 @@ import java.io.File;
 import java.io.IOException;
 
 import de.tadris.fitness.R;
+import de.tadris.fitness.data.WorkoutReprocessor;
 import de.tadris.fitness.export.BackupController;
 import de.tadris.fitness.export.RestoreController;
 import de.tadris.fitness.recording.announcement.VoiceAnnouncements;
@@ -93,6 +94,11 @@ public class SettingsActivity extends FitoTrackSettingsActivity {
             showExportDialog();
             return true;
         });
+        findPreference("reprocess").setOnPreferenceClickListener(preference -> {
+            startReprocessing();
+            return true;
+        });
+        updateReprocessSummary();
 
     }
 
@@ -241,8 +247,84 @@ public class SettingsActivity extends FitoTrackSettingsActivity {
         showNumberPickerDialog(getString(R.string.pref_weight), v, (dialog, which) -> {
             int unitValue = np.getValue();
             int kilograms = (int) Math.round(UnitUtils.CHOSEN_SYSTEM.getKilogramFromUnit(unitValue));
+            int oldKilograms = preferences.getInt(preferenceVariable, 80);
             preferences.edit().putInt(preferenceVariable, kilograms).apply();
+            if (kilograms != oldKilograms) {
+                showReprocessDialog();
+            }
+        });
+    }
+
+    private void showReprocessDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.reprocessWorkouts)
+                .setMessage(R.string.reprocessAfterWeightChange)
+                .setNegativeButton(R.string.cancel, null)
+                .setPositiveButton(R.string.okay, (dialog, which) -> startReprocessing())
+                .create().show();
+    }
+
+    private WorkoutReprocessor reprocessor;
+
+    private void startReprocessing() {
+        if (reprocessor != null) {
+            return;
+        }
+        ProgressDialogController dialogController = new ProgressDialogController(this, getString(R.string.reprocessWorkouts));
+        reprocessor = new WorkoutReprocessor(this, new WorkoutReprocessor.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+                dialogController.setProgress(total > 0 ? 100 * done / total : 100, getString(R.string.reprocessProgress, done, total));
+            }
+
+            @Override
+            public void onFinished() {
+                reprocessor = null;
+                if (isDestroyed()) {
+                    return;
+                }
+                dialogController.cancel();
+                updateReprocessSummary();
+            }
+
+            @Override
+            public void onCancelled() {
+                reprocessor = null;
+                if (isDestroyed()) {
+                    return;
+                }
+                updateReprocessSummary();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                reprocessor = null;
+                if (isDestroyed()) {
+                    // Cancelling stops only after the current batch
+                    return;
+                }
+                dialogController.cancel();
+                updateReprocessSummary();
+                showErrorDialog(e, R.string.error, R.string.errorReprocessingFailed);
+            }
         });
+        dialogController.setOnCancel(reprocessor::cancel);
+        dialogController.show();
+        reprocessor.start();
+    }
+
+    private void updateReprocessSummary() {
+        findPreference("reprocess").setSummary(WorkoutReprocessor.isUnfinished(this) ?
+                R.string.reprocessUnfinishedSummary : R.string.reprocessWorkoutsSummary);
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (reprocessor != null) {
+            // The progress is saved, so it can be continued later
+            reprocessor.cancel();
+        }
+        super.onDestroy();
     }
 
     /**
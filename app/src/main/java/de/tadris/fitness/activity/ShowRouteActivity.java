@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.activity;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.MenuItem;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import de.tadris.fitness.Instance;
+import de.tadris.fitness.R;
+import de.tadris.fitness.data.WorkoutSummary;
+import de.tadris.fitness.util.DialogUtils;
+import de.tadris.fitness.view.WorkoutAdapter;
+
+/**
+ * Lists all workouts on the same route, newest first
+ */
+public class ShowRouteActivity extends FitoTrackActivity implements WorkoutAdapter.WorkoutAdapterListener {
+
+    static long ROUTE_ID;
+
+    private RecyclerView listView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_show_route);
+        setTitle(R.string.sameRoute);
+        setupActionBar();
+
+        listView = findViewById(R.id.routeWorkoutList);
+        listView.setHasFixedSize(true);
+        listView.setLayoutManager(new LinearLayoutManager(this));
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        refresh();
+    }
+
+    private void refresh() {
+        Instance.getInstance(this).workoutRepository.getWorkoutsOnRoute(ROUTE_ID, runs -> {
+            if (isDestroyed()) {
+                return;
+            }
+            listView.setAdapter(new WorkoutAdapter(runs, this));
+        });
+    }
+
+    @Override
+    public void onItemClick(int pos, WorkoutSummary summary) {
+        Instance.getInstance(this).workoutRepository.getWorkoutById(summary.id, workout -> {
+            if (workout == null) {
+                refresh();
+                return;
+            }
+            WorkoutActivity.setSelectedWorkout(workout);
+            startActivity(new Intent(this, ShowWorkoutActivity.class));
+        });
+    }
+
+    @Override
+    public void onItemLongClick(int pos, WorkoutSummary summary) {
+        DialogUtils.showDeleteWorkoutDialog(this, () ->
+                Instance.getInstance(this).workoutRepository.deleteWorkout(summary.id, this::refresh));
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (MenuUtils.handleHomeButton(this, item)) {
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -35,13 +35,13 @@ import androidx.core.content.FileProvider;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
-import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutSplit;
+import de.tadris.fitness.data.WorkoutSplits;
+import de.tadris.fitness.data.WorkoutSummary;
 import de.tadris.fitness.osm.OAuthAuthentication;
 import de.tadris.fitness.osm.OsmTraceUploader;
 import de.tadris.fitness.util.DialogUtils;
@@ -55,6 +55,7 @@ import oauth.signpost.OAuthConsumer;
 public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.WorkoutDeleter {
 
     TextView commentView;
+    private WorkoutSplit[] splits;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,6 +68,21 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
 
         initAfterContent();
 
+        loadTrack(this::loadSplits);
+    }
+
+    private void loadSplits() {
+        double splitLength = WorkoutSplits.getSplitLength(UnitUtils.CHOSEN_SYSTEM);
+        Instance.getInstance(this).workoutRepository.getSplitsOfWorkout(workout.id, splitLength, result -> {
+            if (isDestroyed()) {
+                return;
+            }
+            splits = result;
+            initContent();
+        });
+    }
+
+    private void initContent() {
         commentView = addText("", true);
         commentView.setOnClickListener(v -> openEditCommentDialog());
         updateCommentText();
@@ -102,6 +118,10 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
             speedDiagram.setOnClickListener(v -> startDiagramActivity(ShowWorkoutMapDiagramActivity.DIAGRAM_TYPE_SPEED));
         }
 
+        if (splits.length > 1) {
+            addSplits();
+        }
+
         addTitle(getString(R.string.workoutBurnedEnergy));
         addKeyValue(getString(R.string.workoutTotalEnergy), workout.calorie + " kcal",
                 getString(R.string.workoutEnergyConsumption), UnitUtils.getRelativeEnergyConsumption((double) workout.calorie / ((double) workout.length / 1000)));
@@ -115,8 +135,53 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
             addHeightDiagram();
 
             heightDiagram.setOnClickListener(v -> startDiagramActivity(ShowWorkoutMapDiagramActivity.DIAGRAM_TYPE_HEIGHT));
+
+            addRouteComparison();
+        }
+
+    }
+
+    private void addSplits() {
+        addTitle(getString(R.string.workoutSplits));
+        double distance = 0;
+        for (WorkoutSplit split : splits) {
+            distance += split.distance;
+            addKeyValue(UnitUtils.getDistance((int) Math.round(distance)), UnitUtils.getHourMinuteSecondTime(split.duration),
+                    "+" + UnitUtils.getDistance(Math.round(split.ascent)) + " / -" + UnitUtils.getDistance(Math.round(split.descent)),
+                    UnitUtils.getPace(split.getPace()));
         }
+    }
 
+    private void addRouteComparison() {
+        Instance.getInstance(this).workoutRepository.getWorkoutsOnSameRoute(workout.id, runs -> {
+            if (isDestroyed() || runs.length < 2) {
+                return;
+            }
+            long bestDuration = Long.MAX_VALUE;
+            long totalDuration = 0;
+            int rank = 1;
+            for (WorkoutSummary run : runs) {
+                bestDuration = Math.min(bestDuration, run.duration);
+                totalDuration += run.duration;
+                if (run.duration < workout.duration) {
+                    rank++;
+                }
+            }
+            addTitle(getString(R.string.sameRoute));
+            addKeyValue(getString(R.string.routeRuns), String.valueOf(runs.length),
+                    getString(R.string.routeRank), rank + " / " + runs.length);
+            addKeyValue(getString(R.string.routeBestDuration), UnitUtils.getHourMinuteSecondTime(bestDuration),
+                    getString(R.string.routeAverageDuration), UnitUtils.getHourMinuteSecondTime(totalDuration / runs.length));
+            TextView showRuns = addText(getString(R.string.routeShowAllRuns), true);
+            showRuns.setOnClickListener(v -> Instance.getInstance(this).workoutRepository.getRouteIdOfWorkout(workout.id, routeId -> {
+                if (isDestroyed() || routeId == null) {
+                    return;
+                }
+                // The route stays when this workout is deleted from the list
+                ShowRouteActivity.ROUTE_ID = routeId;
+                startActivity(new Intent(this, ShowRouteActivity.class));
+            }));
+        });
     }
 
     private void startDiagramActivity(String diagramType) {
@@ -136,7 +201,7 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
 
     private void changeComment(String comment) {
         workout.comment = comment;
-        Instance.getInstance(this).db.workoutDao().updateWorkout(workout);
+        Instance.getInstance(this).workoutRepository.updateWorkout(workout, null);
         updateCommentText();
     }
 
@@ -170,7 +235,7 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
     }
 
     public void deleteWorkout() {
-        Instance.getInstance(this).db.workoutDao().deleteWorkout(workout);
+        Instance.getInstance(this).workoutRepository.deleteWorkout(workout, null);
         finish();
     }
 
@@ -259,13 +324,16 @@ public class ShowWorkoutActivity extends WorkoutActivity implements DialogUtils.
     }
 
     private void uploadToOsm(boolean cut, GpsTraceDetails.Visibility visibility, String description) {
-        List<WorkoutSample> samples = new ArrayList<>(this.samples);
-        new OsmTraceUploader(this, mHandler, workout, samples, visibility, oAuthConsumer, cut, description).upload();
+        new OsmTraceUploader(this, mHandler, workout, visibility, oAuthConsumer, cut, description).upload();
     }
 
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
+        if (track == null && id != android.R.id.home) {
+            // Still loading
+            return true;
+        }
         switch (id) {
             case R.id.actionDeleteWorkout:
                 showDeleteDialog();
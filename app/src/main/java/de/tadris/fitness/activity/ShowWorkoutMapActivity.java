@@ -37,6 +37,10 @@ public class ShowWorkoutMapActivity extends WorkoutActivity {
         initAfterContent();
 
         fullScreenItems = true;
+        loadTrack(this::initContent);
+    }
+
+    private void initContent() {
         addMap();
 
         map.setClickable(true);
@@ -41,6 +41,10 @@ public class ShowWorkoutMapDiagramActivity extends WorkoutActivity {
         initAfterContent();
 
         fullScreenItems = true;
+        loadTrack(this::initContent);
+    }
+
+    private void initContent() {
         addMap();
         map.setClickable(true);
 
@@ -50,7 +54,6 @@ public class ShowWorkoutMapDiagramActivity extends WorkoutActivity {
             case DIAGRAM_TYPE_HEIGHT: addHeightDiagram(); break;
             case DIAGRAM_TYPE_SPEED:  addSpeedDiagram();  break;
         }
-
     }
 
 
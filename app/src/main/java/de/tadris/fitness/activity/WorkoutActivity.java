@@ -47,14 +47,12 @@ import org.mapsforge.map.layer.download.TileDownloadLayer;
 import org.mapsforge.map.layer.overlay.FixedPixelCircle;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
 import de.tadris.fitness.data.Workout;
-import de.tadris.fitness.data.WorkoutManager;
-import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutTrack;
 import de.tadris.fitness.map.MapManager;
 import de.tadris.fitness.map.WorkoutLayer;
 import de.tadris.fitness.util.unit.UnitUtils;
@@ -63,7 +61,7 @@ public abstract class WorkoutActivity extends InformationActivity {
 
     private static Workout selectedWorkout;
 
-    List<WorkoutSample> samples;
+    WorkoutTrack track;
     Workout workout;
     private Resources.Theme theme;
     MapView map;
@@ -76,10 +74,22 @@ public abstract class WorkoutActivity extends InformationActivity {
 
     void initBeforeContent() {
         workout= selectedWorkout;
-        samples= Arrays.asList(Instance.getInstance(this).db.workoutDao().getAllSamplesOfWorkout(workout.id));
         setTheme(Instance.getInstance(this).themes.getWorkoutTypeTheme(workout.getWorkoutType()));
     }
 
+    /**
+     * Loads the track on the database thread and calls onLoaded on the main thread afterwards
+     */
+    void loadTrack(Runnable onLoaded) {
+        Instance.getInstance(this).workoutRepository.getTrackOfWorkout(workout.id, result -> {
+            if (isDestroyed()) {
+                return;
+            }
+            track= result;
+            onLoaded.run();
+        });
+    }
+
     void initAfterContent() {
         if (getActionBar() != null) {
             getActionBar().setDisplayHomeAsUpEnabled(true);
@@ -100,12 +110,10 @@ public abstract class WorkoutActivity extends InformationActivity {
 
         converter.onCreate();
 
-        List<Entry> entries = new ArrayList<>();
-        for (WorkoutSample sample : samples) {
+        List<Entry> entries = new ArrayList<>(track.size());
+        for (int i= 0; i < track.size(); i++) {
             // turn your data into Entry objects
-            Entry e= new Entry((float)(sample.relativeTime) / 1000f / 60f, converter.getValue(sample));
-            entries.add(e);
-            converter.sampleGetsEntry(sample, e);
+            entries.add(new Entry((float)(track.getRelativeTime(i)) / 1000f / 60f, converter.getValue(i)));
         }
 
         LineDataSet dataSet = new LineDataSet(entries, converter.getName()); // add entries to dataset
@@ -128,7 +136,11 @@ public abstract class WorkoutActivity extends InformationActivity {
                 @Override
                 public void onValueSelected(Entry e, Highlight h) {
                     onNothingSelected();
-                    onDiagramValueSelected(findSample(converter, e).toLatLong());
+                    // Entries were added in the order of the samples
+                    int index= dataSet.getEntryIndex(e);
+                    if(index >= 0){
+                        onDiagramValueSelected(track.getLatLong(index));
+                    }
                 }
 
                 @Override
@@ -159,36 +171,20 @@ public abstract class WorkoutActivity extends InformationActivity {
 
     interface SampleConverter{
         void onCreate();
-        float getValue(WorkoutSample sample);
-        void sampleGetsEntry(WorkoutSample sample, Entry entry);
+        float getValue(int index);
         String getName();
         String getDescription();
-        boolean compare(WorkoutSample sample, Entry entry);
         void afterAdd(LineChart chart);
     }
 
-    private WorkoutSample findSample(SampleConverter converter, Entry entry) {
-        for(WorkoutSample sample : samples){
-            if(converter.compare(sample, entry)){
-                return sample;
-            }
-        }
-        return null;
-    }
-
     void addHeightDiagram(){
         addDiagram(new SampleConverter() {
             @Override
             public void onCreate() { }
 
             @Override
-            public float getValue(WorkoutSample sample) {
-                return (float) UnitUtils.CHOSEN_SYSTEM.getDistanceFromMeters(sample.elevation);
-            }
-
-            @Override
-            public void sampleGetsEntry(WorkoutSample sample, Entry entry) {
-                sample.tmpHeightEntry= entry;
+            public float getValue(int index) {
+                return (float) UnitUtils.CHOSEN_SYSTEM.getDistanceFromMeters(track.getElevation(index));
             }
 
             @Override
@@ -201,11 +197,6 @@ public abstract class WorkoutActivity extends InformationActivity {
                 return "min - " + UnitUtils.CHOSEN_SYSTEM.getShortDistanceUnit();
             }
 
-            @Override
-            public boolean compare(WorkoutSample sample, Entry entry) {
-                return sample.tmpHeightEntry.equalTo(entry);
-            }
-
             @Override
             public void afterAdd(LineChart chart) {
                 heightDiagram= chart;
@@ -216,18 +207,11 @@ public abstract class WorkoutActivity extends InformationActivity {
     void addSpeedDiagram(){
         addDiagram(new SampleConverter() {
             @Override
-            public void onCreate() {
-                WorkoutManager.roundSpeedValues(samples);
-            }
-
-            @Override
-            public float getValue(WorkoutSample sample) {
-                return (float)UnitUtils.CHOSEN_SYSTEM.getSpeedFromMeterPerSecond(sample.tmpRoundedSpeed);
-            }
+            public void onCreate() { }
 
             @Override
-            public void sampleGetsEntry(WorkoutSample sample, Entry entry) {
-                sample.tmpSpeedEntry= entry;
+            public float getValue(int index) {
+                return (float)UnitUtils.CHOSEN_SYSTEM.getSpeedFromMeterPerSecond(track.getRoundedSpeed(index));
             }
 
             @Override
@@ -240,11 +224,6 @@ public abstract class WorkoutActivity extends InformationActivity {
                 return "min - " + UnitUtils.CHOSEN_SYSTEM.getSpeedUnit();
             }
 
-            @Override
-            public boolean compare(WorkoutSample sample, Entry entry) {
-                return sample.tmpSpeedEntry.equalTo(entry);
-            }
-
             @Override
             public void afterAdd(LineChart chart) {
                 speedDiagram= chart;
@@ -259,10 +238,16 @@ public abstract class WorkoutActivity extends InformationActivity {
         map= new MapView(this);
         downloadLayer = MapManager.setupMap(map);
 
-        WorkoutLayer workoutLayer= new WorkoutLayer(samples, getThemePrimaryColor());
+        WorkoutLayer workoutLayer= new WorkoutLayer(track, getThemePrimaryColor());
         map.addLayer(workoutLayer);
 
-        final BoundingBox bounds= new BoundingBox(workoutLayer.getLatLongs()).extendMeters(50);
+        BoundingBox trackBounds;
+        if(workout.hasBounds()){
+            trackBounds= new BoundingBox(workout.minLat, workout.minLon, workout.maxLat, workout.maxLon);
+        }else{
+            trackBounds= track.getBoundingBox();
+        }
+        final BoundingBox bounds= trackBounds.extendMeters(50);
         mHandler.postDelayed(() -> {
             map.getModel().mapViewPosition.setMapPosition(new MapPosition(bounds.getCenterPoint(),
                     (LatLongUtils.zoomForBounds(map.getDimension(), bounds, map.getModel().displayModel.getTileSize()))));
@@ -281,11 +266,11 @@ public abstract class WorkoutActivity extends InformationActivity {
 
         Paint pGreen= AndroidGraphicFactory.INSTANCE.createPaint();
         pGreen.setColor(Color.GREEN);
-        map.addLayer(new FixedPixelCircle(samples.get(0).toLatLong(), 20, pGreen, null));
+        map.addLayer(new FixedPixelCircle(track.getLatLong(0), 20, pGreen, null));
         Paint pRed= AndroidGraphicFactory.INSTANCE.createPaint();
         pRed.setColor(Color.RED);
 
-        map.addLayer(new FixedPixelCircle(samples.get(samples.size()-1).toLatLong(), 20, pRed, null));
+        map.addLayer(new FixedPixelCircle(track.getLatLong(track.size()-1), 20, pRed, null));
 
         map.setClickable(false);
 
@@ -296,7 +281,7 @@ public abstract class WorkoutActivity extends InformationActivity {
     }
 
     protected boolean hasSamples() {
-        return samples.size() > 1;
+        return track.size() > 1;
     }
 
     @Override
@@ -22,7 +22,7 @@ package de.tadris.fitness.data;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
 
-@Database(version = 3, entities = {Workout.class, WorkoutSample.class})
+@Database(version = 18, entities = {Workout.class, WorkoutSample.class, PackedTrack.class, WorkoutAggregate.class, WorkoutCell.class, WorkoutSearchEntry.class, SimplifiedTrack.class, WorkoutRoute.class, WorkoutRouteBand.class, BestEffort.class, WorkoutSplit.class})
 public abstract class AppDatabase extends RoomDatabase {
     public abstract WorkoutDao workoutDao();
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * Fastest segment of a workout for one of the standard {@link #DISTANCES}
+ */
+@Entity(tableName = "best_effort",
+        primaryKeys = {"workout_id", "distance"},
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE),
+        indices = @Index({"workoutType", "distance", "duration"}))
+public class BestEffort {
+
+    /**
+     * Standard distances in meters, the last one is a half marathon
+     */
+    public static final int[] DISTANCES = {400, 1000, 5000, 10000, 21097};
+
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    /**
+     * Copy of the type of the workout, so records can be looked up by type with one index
+     */
+    public String workoutType;
+
+    /**
+     * One of {@link #DISTANCES}
+     */
+    public int distance;
+
+    /**
+     * Duration of the segment in milliseconds
+     */
+    public long duration;
+
+    /**
+     * Relative time of the workout at which the segment starts
+     */
+    public long startTime;
+
+    public WorkoutType getWorkoutType() {
+        return WorkoutType.getTypeById(workoutType);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.tadris.fitness.util.GeoUtils;
+
+/**
+ * Finds the fastest segment of a track for every standard distance, see {@link BestEffort}
+ */
+public class BestEfforts {
+
+    private int count = 0;
+    private double[] distance = new double[256];
+    private long[] time = new long[256];
+    private double lastLat, lastLon;
+
+    /**
+     * Samples have to be added in the order they were recorded
+     *
+     * @param relativeTime time since the start without pauses
+     */
+    public void add(double lat, double lon, long relativeTime) {
+        if (count == distance.length) {
+            distance = Arrays.copyOf(distance, count * 2);
+            time = Arrays.copyOf(time, count * 2);
+        }
+        distance[count] = count == 0 ? 0 : distance[count - 1] + GeoUtils.sphericalDistance(lastLat, lastLon, lat, lon);
+        time[count] = relativeTime;
+        lastLat = lat;
+        lastLon = lon;
+        count++;
+    }
+
+    /**
+     * @return the best efforts for all distances which were reached
+     */
+    public BestEffort[] create(long workoutId, String workoutType) {
+        List<BestEffort> efforts = new ArrayList<>();
+        for (int target : BestEffort.DISTANCES) {
+            BestEffort effort = find(target);
+            if (effort == null) {
+                // Longer distances are not reached either
+                break;
+            }
+            effort.workoutId = workoutId;
+            effort.workoutType = workoutType;
+            efforts.add(effort);
+        }
+        return efforts.toArray(new BestEffort[0]);
+    }
+
+    /**
+     * Slides a window over the cumulative distance. For every end sample the start is moved forward
+     * as far as the window is still at least as long as the target, so both ends only move forward.
+     */
+    private BestEffort find(int target) {
+        BestEffort best = null;
+        int start = 0;
+        for (int end = 1; end < count; end++) {
+            if (distance[end] - distance[0] < target) {
+                continue;
+            }
+            while (distance[end] - distance[start + 1] >= target) {
+                start++;
+            }
+            // The target distance ends between start and start + 1, interpolate the start time
+            double excess = distance[end] - distance[start] - target;
+            double segment = distance[start + 1] - distance[start];
+            long startTime = time[start] + (segment > 0 ? Math.round((time[start + 1] - time[start]) * excess / segment) : 0);
+            long duration = time[end] - startTime;
+            if (best == null || duration < best.duration) {
+                best = new BestEffort();
+                best.distance = target;
+                best.duration = duration;
+                best.startTime = startTime;
+            }
+        }
+        return best;
+    }
+
+    private void insert(SupportSQLiteDatabase db, long workoutId, String workoutType) {
+        for (BestEffort effort : create(workoutId, workoutType)) {
+            db.execSQL("INSERT OR REPLACE INTO best_effort (workout_id, workoutType, distance, duration, startTime) VALUES (?, ?, ?, ?, ?)",
+                    new Object[]{effort.workoutId, effort.workoutType, effort.distance, effort.duration, effort.startTime});
+        }
+        count = 0;
+    }
+
+    /**
+     * Calculates the best efforts of all workouts from their samples
+     */
+    public static void rebuild(SupportSQLiteDatabase db) throws IOException {
+        db.execSQL("DELETE FROM best_effort");
+        BestEfforts efforts = new BestEfforts();
+        StoredTracks.forEach(db, (workoutId, workoutType, samples) -> {
+            for (WorkoutSample sample : samples) {
+                efforts.add(sample.lat, sample.lon, sample.relativeTime);
+            }
+            efforts.insert(db, workoutId, workoutType);
+        });
+    }
+
+}
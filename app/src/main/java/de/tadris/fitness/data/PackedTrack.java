@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+import java.io.IOException;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * All samples of a workout packed into one blob by {@link TrackCodec}.
+ * Used instead of single workout_sample rows when compact track storage is enabled.
+ */
+@Entity(tableName = "workout_track",
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE))
+public class PackedTrack {
+
+    @PrimaryKey
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    public int sampleCount;
+
+    public byte[] data;
+
+    @Ignore
+    private WorkoutSample[] samples;
+
+    public static PackedTrack pack(long workoutId, WorkoutSample[] samples) {
+        PackedTrack track = new PackedTrack();
+        track.workoutId = workoutId;
+        track.sampleCount = samples.length;
+        track.data = TrackCodec.encode(samples);
+        return track;
+    }
+
+    /**
+     * Decodes the blob on first access
+     */
+    public synchronized WorkoutSample[] getSamples() {
+        if (samples == null) {
+            try {
+                samples = TrackCodec.decode(workoutId, data);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot decode track of workout " + workoutId, e);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * A packed track without its data
+     */
+    public static class Info {
+
+        @ColumnInfo(name = "workout_id")
+        public long workoutId;
+
+        public int sampleCount;
+
+    }
+
+}
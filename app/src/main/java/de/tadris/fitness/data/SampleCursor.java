@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Iterates over stored samples without loading them all into memory.
+ *
+ * The sample returned by {@link #getSample()} is reused and only valid until the cursor is moved.
+ * Consumers which need to keep a sample have to copy its values.
+ */
+public abstract class SampleCursor implements Closeable {
+
+    public abstract int getCount();
+
+    /**
+     * Moving forward one position at a time is cheap, random access might not be
+     */
+    public abstract boolean moveToPosition(int position);
+
+    public abstract WorkoutSample getSample();
+
+    public abstract int getPosition();
+
+    @Override
+    public abstract void close();
+
+    public boolean moveToNext() {
+        return moveToPosition(getPosition() + 1);
+    }
+
+    /**
+     * Wraps the cursor into a read-only list, e.g. for serializers which expect a list.
+     * Elements are mapped when they are accessed.
+     */
+    public <T> List<T> asList(Mapper<T> mapper) {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                if (!moveToPosition(index)) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                }
+                return mapper.map(getSample());
+            }
+
+            @Override
+            public int size() {
+                return getCount();
+            }
+        };
+    }
+
+    public interface Mapper<T> {
+        T map(WorkoutSample sample);
+    }
+
+    public static SampleCursor fromRows(Cursor cursor) {
+        return new RowCursor(cursor);
+    }
+
+    public static SampleCursor fromArray(WorkoutSample[] samples) {
+        return new ArrayCursor(samples);
+    }
+
+    /**
+     * Reads the given cursors one after another. Cursors which were passed are closed.
+     */
+    public static SampleCursor concat(SampleCursor... cursors) {
+        return new ConcatCursor(cursors);
+    }
+
+    /**
+     * Opens the underlying cursor not before it is accessed
+     *
+     * @param count the number of samples the loaded cursor will have
+     */
+    public static SampleCursor lazy(int count, Loader loader) {
+        return new LazyCursor(count, loader);
+    }
+
+    public interface Loader {
+        SampleCursor load();
+    }
+
+    private static class RowCursor extends SampleCursor {
+
+        private final Cursor cursor;
+        private final WorkoutSample sample = new WorkoutSample();
+        private final int idIndex, workoutIdIndex, absoluteTimeIndex, relativeTimeIndex, latIndex, lonIndex, elevationIndex, speedIndex;
+
+        RowCursor(Cursor cursor) {
+            this.cursor = cursor;
+            idIndex = cursor.getColumnIndexOrThrow("id");
+            workoutIdIndex = cursor.getColumnIndexOrThrow("workout_id");
+            absoluteTimeIndex = cursor.getColumnIndexOrThrow("absoluteTime");
+            relativeTimeIndex = cursor.getColumnIndexOrThrow("relativeTime");
+            latIndex = cursor.getColumnIndexOrThrow("lat");
+            lonIndex = cursor.getColumnIndexOrThrow("lon");
+            elevationIndex = cursor.getColumnIndexOrThrow("elevation");
+            speedIndex = cursor.getColumnIndexOrThrow("speed");
+        }
+
+        @Override
+        public int getCount() {
+            return cursor.getCount();
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (!cursor.moveToPosition(position)) {
+                return false;
+            }
+            sample.id = cursor.getLong(idIndex);
+            sample.workoutId = cursor.getLong(workoutIdIndex);
+            sample.absoluteTime = cursor.getLong(absoluteTimeIndex);
+            sample.relativeTime = cursor.getLong(relativeTimeIndex);
+            sample.lat = cursor.getDouble(latIndex);
+            sample.lon = cursor.getDouble(lonIndex);
+            sample.elevation = cursor.getDouble(elevationIndex);
+            sample.speed = cursor.getDouble(speedIndex);
+            return true;
+        }
+
+        @Override
+        public WorkoutSample getSample() {
+            return sample;
+        }
+
+        @Override
+        public int getPosition() {
+            return cursor.getPosition();
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+
+    private static class ArrayCursor extends SampleCursor {
+
+        private final WorkoutSample[] samples;
+        private int position = -1;
+
+        ArrayCursor(WorkoutSample[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public int getCount() {
+            return samples.length;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (position < 0 || position >= samples.length) {
+                return false;
+            }
+            this.position = position;
+            return true;
+        }
+
+        @Override
+        public WorkoutSample getSample() {
+            return samples[position];
+        }
+
+        @Override
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class LazyCursor extends SampleCursor {
+
+        private final int count;
+        private final Loader loader;
+        private SampleCursor cursor;
+
+        LazyCursor(int count, Loader loader) {
+            this.count = count;
+            this.loader = loader;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (cursor == null) {
+                cursor = loader.load();
+            }
+            return cursor.moveToPosition(position);
+        }
+
+        @Override
+        public WorkoutSample getSample() {
+            return cursor.getSample();
+        }
+
+        @Override
+        public int getPosition() {
+            return cursor == null ? -1 : cursor.getPosition();
+        }
+
+        @Override
+        public void close() {
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+
+    private static class ConcatCursor extends SampleCursor {
+
+        private final SampleCursor[] cursors;
+        private final int count;
+        private int current = 0;
+        private int currentStart = 0;
+        private int position = -1;
+
+        ConcatCursor(SampleCursor[] cursors) {
+            this.cursors = cursors;
+            int count = 0;
+            for (SampleCursor cursor : cursors) {
+                count += cursor.getCount();
+            }
+            this.count = count;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            if (position < 0 || position >= count) {
+                return false;
+            }
+            while (position < currentStart) {
+                current--;
+                currentStart -= cursors[current].getCount();
+            }
+            while (position >= currentStart + cursors[current].getCount()) {
+                currentStart += cursors[current].getCount();
+                cursors[current].close();
+                current++;
+            }
+            this.position = position;
+            return cursors[current].moveToPosition(position - currentStart);
+        }
+
+        @Override
+        public WorkoutSample getSample() {
+            return cursors[current].getSample();
+        }
+
+        @Override
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+            for (SampleCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+}
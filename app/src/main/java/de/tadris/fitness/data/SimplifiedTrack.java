@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+
+import de.tadris.fitness.util.TrackSimplifier;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * One simplification level of a workout track. Stores the indices of the samples which are kept.
+ */
+@Entity(tableName = "workout_simplified",
+        primaryKeys = {"workout_id", "level"},
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE))
+public class SimplifiedTrack {
+
+    /**
+     * Maximum deviation from the original track in meters for each level
+     */
+    public static final double[] TOLERANCES = {1, 4, 16, 64, 256};
+
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    public int level;
+
+    public int pointCount;
+
+    public byte[] indices;
+
+    public double getTolerance() {
+        return TOLERANCES[level];
+    }
+
+    public int[] getIndices() {
+        try {
+            return TrackCodec.decodeIndices(indices);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot decode simplified track of workout " + workoutId, e);
+        }
+    }
+
+    /**
+     * Computes all levels for the given samples
+     */
+    public static SimplifiedTrack[] create(long workoutId, double[] lat, double[] lon) {
+        int[][] levels = TrackSimplifier.simplify(lat, lon, TOLERANCES);
+        SimplifiedTrack[] tracks = new SimplifiedTrack[levels.length];
+        for (int level = 0; level < levels.length; level++) {
+            SimplifiedTrack track = new SimplifiedTrack();
+            track.workoutId = workoutId;
+            track.level = level;
+            track.pointCount = levels[level].length;
+            track.indices = TrackCodec.encodeIndices(levels[level]);
+            tracks[level] = track;
+        }
+        return tracks;
+    }
+
+    /**
+     * Computes the levels of all workouts from their samples
+     */
+    public static void rebuild(SupportSQLiteDatabase db) throws IOException {
+        db.execSQL("DELETE FROM workout_simplified");
+        StoredTracks.forEach(db, (workoutId, workoutType, samples) -> {
+            double[] lat = new double[samples.length];
+            double[] lon = new double[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                lat[i] = samples[i].lat;
+                lon[i] = samples[i].lon;
+            }
+            for (SimplifiedTrack track : create(workoutId, lat, lon)) {
+                db.execSQL("INSERT OR REPLACE INTO workout_simplified (workout_id, level, pointCount, indices) VALUES (?, ?, ?, ?)",
+                        new Object[]{track.workoutId, track.level, track.pointCount, track.indices});
+            }
+        });
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the samples of all stored workouts one workout at a time, whether they are stored as rows
+ * or packed. Used to rebuild the tables which are derived from the samples.
+ */
+class StoredTracks {
+
+    private StoredTracks() {
+    }
+
+    static void forEach(SupportSQLiteDatabase db, Visitor visitor) throws IOException {
+        try (Cursor cursor = db.query("SELECT workout_id, workoutType, lat, lon, elevation, relativeTime, speed FROM workout_sample " +
+                "JOIN workout ON workout.id = workout_sample.workout_id ORDER BY workout_id, relativeTime")) {
+            List<WorkoutSample> samples = new ArrayList<>();
+            long currentWorkout = -1;
+            String currentType = null;
+            while (cursor.moveToNext()) {
+                long workoutId = cursor.getLong(0);
+                if (workoutId != currentWorkout) {
+                    visit(visitor, currentWorkout, currentType, samples);
+                    currentWorkout = workoutId;
+                    currentType = cursor.getString(1);
+                }
+                WorkoutSample sample = new WorkoutSample();
+                sample.workoutId = workoutId;
+                sample.lat = cursor.getDouble(2);
+                sample.lon = cursor.getDouble(3);
+                sample.elevation = cursor.getDouble(4);
+                sample.relativeTime = cursor.getLong(5);
+                sample.speed = cursor.getDouble(6);
+                samples.add(sample);
+            }
+            visit(visitor, currentWorkout, currentType, samples);
+        }
+
+        try (Cursor cursor = db.query("SELECT workout_id, workoutType, data FROM workout_track JOIN workout ON workout.id = workout_track.workout_id")) {
+            while (cursor.moveToNext()) {
+                long workoutId = cursor.getLong(0);
+                visitor.visit(workoutId, cursor.getString(1), TrackCodec.decode(workoutId, cursor.getBlob(2)));
+            }
+        }
+    }
+
+    private static void visit(Visitor visitor, long workoutId, String workoutType, List<WorkoutSample> samples) {
+        if (!samples.isEmpty()) {
+            visitor.visit(workoutId, workoutType, samples.toArray(new WorkoutSample[0]));
+            samples.clear();
+        }
+    }
+
+    interface Visitor {
+
+        /**
+         * @param samples all samples of the workout in the order they were recorded
+         */
+        void visit(long workoutId, String workoutType, WorkoutSample[] samples);
+
+    }
+
+}
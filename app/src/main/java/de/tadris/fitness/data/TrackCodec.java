@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Packs the samples of one workout into a compressed columnar blob.
+ *
+ * Every column is stored as a run of zigzag varint deltas to the previous value, so a regular
+ * recording costs only a few bytes per sample before deflate compression.
+ * Coordinates are stored in 1e-7 degrees (about 1 cm), elevation in centimeters and speed in cm/s.
+ */
+public class TrackCodec {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final double COORDINATE_SCALE = 1e7;
+    private static final double ELEVATION_SCALE = 100;
+    private static final double SPEED_SCALE = 100;
+
+    private TrackCodec() {
+    }
+
+    public static byte[] encode(WorkoutSample[] samples) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(samples.length * 8 + 16);
+            bytes.write(FORMAT_VERSION);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+                writeVarLong(out, samples.length);
+
+                long last = 0;
+                for (WorkoutSample sample : samples) {
+                    writeVarLong(out, zigzag(sample.id - last));
+                    last = sample.id;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    writeVarLong(out, zigzag(sample.absoluteTime - last));
+                    last = sample.absoluteTime;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    writeVarLong(out, zigzag(sample.relativeTime - last));
+                    last = sample.relativeTime;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    long value = Math.round(sample.lat * COORDINATE_SCALE);
+                    writeVarLong(out, zigzag(value - last));
+                    last = value;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    long value = Math.round(sample.lon * COORDINATE_SCALE);
+                    writeVarLong(out, zigzag(value - last));
+                    last = value;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    long value = Math.round(sample.elevation * ELEVATION_SCALE);
+                    writeVarLong(out, zigzag(value - last));
+                    last = value;
+                }
+                last = 0;
+                for (WorkoutSample sample : samples) {
+                    long value = Math.round(sample.speed * SPEED_SCALE);
+                    writeVarLong(out, zigzag(value - last));
+                    last = value;
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param workoutId the workout the samples belong to, is not part of the blob
+     */
+    public static WorkoutSample[] decode(long workoutId, byte[] data) throws IOException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        int version = bytes.read();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported track format " + version);
+        }
+        try (InputStream in = new InflaterInputStream(bytes)) {
+            int count = (int) readVarLong(in);
+            WorkoutSample[] samples = new WorkoutSample[count];
+            for (int i = 0; i < count; i++) {
+                samples[i] = new WorkoutSample();
+                samples[i].workoutId = workoutId;
+            }
+
+            long value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.id = value;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.absoluteTime = value;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.relativeTime = value;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.lat = value / COORDINATE_SCALE;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.lon = value / COORDINATE_SCALE;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.elevation = value / ELEVATION_SCALE;
+            }
+            value = 0;
+            for (WorkoutSample sample : samples) {
+                value += unzigzag(readVarLong(in));
+                sample.speed = value / SPEED_SCALE;
+            }
+            return samples;
+        }
+    }
+
+    /**
+     * Packs ascending sample indices, e.g. the points of a simplified track
+     */
+    public static byte[] encodeIndices(int[] indices) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(indices.length + 8);
+            writeVarLong(out, indices.length);
+            int last = 0;
+            for (int index : indices) {
+                writeVarLong(out, index - last);
+                last = index;
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static int[] decodeIndices(byte[] data) throws IOException {
+        InputStream in = new ByteArrayInputStream(data);
+        int[] indices = new int[(int) readVarLong(in)];
+        int value = 0;
+        for (int i = 0; i < indices.length; i++) {
+            value += (int) readVarLong(in);
+            indices[i] = value;
+        }
+        return indices;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (shift < 64) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Track data is truncated");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        throw new IOException("Malformed varint in track data");
+    }
+
+}
@@ -47,4 +47,12 @@ public class UserPreferences {
         return preferences.getString("mapStyle", "osm.mapnik");
     }
 
+    public boolean useCompactTrackStorage(){
+        return preferences.getBoolean("compactTrackStorage", false);
+    }
+
+    public boolean showHeatmap(){
+        return preferences.getBoolean("heatmap", false);
+    }
+
 }
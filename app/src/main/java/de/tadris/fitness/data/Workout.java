@@ -21,6 +21,7 @@ package de.tadris.fitness.data;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -30,7 +31,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
-@Entity(tableName = "workout")
+@Entity(tableName = "workout",
+        indices = {@Index("start"), @Index("boxCell"), @Index("startCell"), @Index("endCell")})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Workout{
 
@@ -78,6 +80,25 @@ public class Workout{
 
     public boolean edited;
 
+    /**
+     * Bounding box of the track, null if the workout has no samples.
+     * Not part of backups, it is calculated again when restoring.
+     */
+    @JsonIgnore
+    public Double minLat, minLon, maxLat, maxLon;
+
+    /**
+     * Geohash cells of the first and last sample, see {@link WorkoutBounds#CELL_PRECISION}
+     */
+    @JsonIgnore
+    public String startCell, endCell;
+
+    /**
+     * Smallest geohash cell which contains the bounding box, used to find workouts in an area
+     */
+    @JsonIgnore
+    public String boxCell;
+
     public String toString(){
         if(comment.length() > 2){
             return comment;
@@ -86,6 +107,11 @@ public class Workout{
         }
     }
 
+    @JsonIgnore
+    public boolean hasBounds(){
+        return minLat != null && minLon != null && maxLat != null && maxLon != null;
+    }
+
     @JsonIgnore
     public String getDateString(){
         return SimpleDateFormat.getDateTimeInstance().format(new Date(start));
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Totals of all workouts of one type in one day, week or month.
+ * The rows are maintained by database triggers, see {@link WorkoutAggregates}.
+ */
+@Entity(tableName = "workout_aggregate",
+        primaryKeys = {"period", "periodStart", "workoutType"})
+public class WorkoutAggregate {
+
+    public static final String PERIOD_DAY = "day";
+    public static final String PERIOD_WEEK = "week";
+    public static final String PERIOD_MONTH = "month";
+
+    @NonNull
+    public String period = PERIOD_DAY;
+
+    /**
+     * First day of the period in local time formatted as yyyy-MM-dd. Weeks start on monday.
+     */
+    @NonNull
+    public String periodStart = "";
+
+    @NonNull
+    public String workoutType = "";
+
+    public int count;
+
+    /**
+     * Sum of the workout lengths in meters
+     */
+    public long distance;
+
+    /**
+     * Sum of the workout durations in milliseconds
+     */
+    public long duration;
+
+    public double ascent;
+
+    public long calorie;
+
+    public WorkoutType getWorkoutType() {
+        return WorkoutType.getTypeById(workoutType);
+    }
+
+    /**
+     * @return the periodStart key of the period which contains the given time
+     */
+    public static String getPeriodStart(String period, long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        switch (period) {
+            case PERIOD_WEEK:
+                int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+                calendar.add(Calendar.DAY_OF_MONTH, -daysSinceMonday);
+                break;
+            case PERIOD_MONTH:
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+                break;
+        }
+        return new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(calendar.getTime());
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.TimeZone;
+
+/**
+ * Keeps the workout_aggregate table in sync with the workout table.
+ *
+ * Triggers on the workout table update the aggregates inside the same transaction as every insert,
+ * update and delete, no matter if it comes from the recorder, the editor or a backup restore.
+ * The periods are local dates, so the aggregates are built again when the time zone changed,
+ * see {@link #updateTimeZone(AppDatabase)}.
+ */
+public class WorkoutAggregates {
+
+    private static final String[] PERIODS = {WorkoutAggregate.PERIOD_DAY, WorkoutAggregate.PERIOD_WEEK, WorkoutAggregate.PERIOD_MONTH};
+
+    private static final String PREFERENCES_NAME = "aggregates";
+    private static final String KEY_TIME_ZONE = "timeZone";
+
+    private static Context context;
+
+    private WorkoutAggregates() {
+    }
+
+    public static void init(Context context) {
+        WorkoutAggregates.context = context.getApplicationContext();
+    }
+
+    /**
+     * Builds the aggregates again if the time zone changed since they were built. Otherwise the triggers
+     * would remove a changed or deleted workout from another period than it was added to.
+     * Has to be called on the database thread before the aggregates are read.
+     */
+    public static void updateTimeZone(AppDatabase db) {
+        String timeZone = TimeZone.getDefault().getID();
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (timeZone.equals(preferences.getString(KEY_TIME_ZONE, null))) {
+            return;
+        }
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        db.runInTransaction(() -> rebuild(database));
+        preferences.edit().putString(KEY_TIME_ZONE, timeZone).apply();
+    }
+
+    /**
+     * Has to be called when the database is created and after the migration which introduced the table
+     */
+    public static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS workout_aggregate_insert AFTER INSERT ON workout BEGIN " +
+                getChangeStatements("NEW", "+") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS workout_aggregate_delete AFTER DELETE ON workout BEGIN " +
+                getChangeStatements("OLD", "-") +
+                "DELETE FROM workout_aggregate WHERE count <= 0; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS workout_aggregate_update AFTER UPDATE OF start, length, duration, ascent, calorie, workoutType ON workout BEGIN " +
+                getChangeStatements("OLD", "-") +
+                getChangeStatements("NEW", "+") +
+                "DELETE FROM workout_aggregate WHERE count <= 0; " +
+                "END");
+    }
+
+    /**
+     * Recalculates all aggregates from the workout table
+     */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM workout_aggregate");
+        for (String period : PERIODS) {
+            db.execSQL("INSERT INTO workout_aggregate (period, periodStart, workoutType, count, distance, duration, ascent, calorie) " +
+                    "SELECT '" + period + "', " + getPeriodStartExpression(period, "workout") + ", IFNULL(workoutType, 'other'), " +
+                    "COUNT(*), SUM(length), SUM(duration), SUM(ascent), SUM(calorie) " +
+                    "FROM workout GROUP BY 2, 3");
+        }
+    }
+
+    private static String getChangeStatements(String row, String sign) {
+        StringBuilder builder = new StringBuilder();
+        for (String period : PERIODS) {
+            String periodStart = getPeriodStartExpression(period, row);
+            String workoutType = "IFNULL(" + row + ".workoutType, 'other')";
+            builder.append("INSERT OR IGNORE INTO workout_aggregate (period, periodStart, workoutType, count, distance, duration, ascent, calorie) ")
+                    .append("VALUES ('").append(period).append("', ").append(periodStart).append(", ").append(workoutType).append(", 0, 0, 0, 0, 0); ");
+            builder.append("UPDATE workout_aggregate SET ")
+                    .append("count = count ").append(sign).append(" 1, ")
+                    .append("distance = distance ").append(sign).append(" ").append(row).append(".length, ")
+                    .append("duration = duration ").append(sign).append(" ").append(row).append(".duration, ")
+                    .append("ascent = ascent ").append(sign).append(" ").append(row).append(".ascent, ")
+                    .append("calorie = calorie ").append(sign).append(" ").append(row).append(".calorie ")
+                    .append("WHERE period = '").append(period).append("' AND periodStart = ").append(periodStart)
+                    .append(" AND workoutType = ").append(workoutType).append("; ");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Same result as {@link WorkoutAggregate#getPeriodStart(String, long)}
+     */
+    private static String getPeriodStartExpression(String period, String row) {
+        String localTime = row + ".start / 1000, 'unixepoch', 'localtime'";
+        switch (period) {
+            case WorkoutAggregate.PERIOD_WEEK:
+                // Next sunday (or today if it is one) minus 6 days is the monday of the week
+                return "date(" + localTime + ", 'weekday 0', '-6 days')";
+            case WorkoutAggregate.PERIOD_MONTH:
+                return "date(" + localTime + ", 'start of month')";
+            default:
+                return "date(" + localTime + ")";
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+
+import de.tadris.fitness.util.GeoHash;
+
+/**
+ * Collects the bounding box and the start and end cell of a track, see {@link Workout#minLat}
+ */
+public class WorkoutBounds {
+
+    public static final int CELL_PRECISION = WorkoutCell.PRECISION;
+
+    private int count = 0;
+    private double minLat, minLon, maxLat, maxLon;
+    private double firstLat, firstLon, lastLat, lastLon;
+
+    /**
+     * Samples have to be added in the order they were recorded
+     */
+    public void add(double lat, double lon) {
+        if (count == 0) {
+            minLat = maxLat = firstLat = lat;
+            minLon = maxLon = firstLon = lon;
+        } else {
+            minLat = Math.min(minLat, lat);
+            minLon = Math.min(minLon, lon);
+            maxLat = Math.max(maxLat, lat);
+            maxLon = Math.max(maxLon, lon);
+        }
+        lastLat = lat;
+        lastLon = lon;
+        count++;
+    }
+
+    public void applyTo(Workout workout) {
+        if (count == 0) {
+            workout.minLat = workout.minLon = workout.maxLat = workout.maxLon = null;
+            workout.startCell = workout.endCell = workout.boxCell = null;
+            return;
+        }
+        workout.minLat = minLat;
+        workout.minLon = minLon;
+        workout.maxLat = maxLat;
+        workout.maxLon = maxLon;
+        workout.startCell = GeoHash.encode(firstLat, firstLon, CELL_PRECISION);
+        workout.endCell = GeoHash.encode(lastLat, lastLon, CELL_PRECISION);
+        workout.boxCell = GeoHash.getEnclosingCell(minLat, minLon, maxLat, maxLon, CELL_PRECISION);
+    }
+
+    private void update(SupportSQLiteDatabase db, long workoutId) {
+        if (count == 0) {
+            return;
+        }
+        db.execSQL("UPDATE workout SET minLat = ?, minLon = ?, maxLat = ?, maxLon = ?, startCell = ?, endCell = ?, boxCell = ? WHERE id = ?",
+                new Object[]{minLat, minLon, maxLat, maxLon,
+                        GeoHash.encode(firstLat, firstLon, CELL_PRECISION), GeoHash.encode(lastLat, lastLon, CELL_PRECISION),
+                        GeoHash.getEnclosingCell(minLat, minLon, maxLat, maxLon, CELL_PRECISION), workoutId});
+        count = 0;
+    }
+
+    /**
+     * Sets the box cell of all workouts from their stored bounding box
+     */
+    public static void updateBoxCells(SupportSQLiteDatabase db) {
+        try (Cursor cursor = db.query("SELECT id, minLat, minLon, maxLat, maxLon FROM workout WHERE minLat IS NOT NULL")) {
+            while (cursor.moveToNext()) {
+                String cell = GeoHash.getEnclosingCell(cursor.getDouble(1), cursor.getDouble(2), cursor.getDouble(3), cursor.getDouble(4), CELL_PRECISION);
+                db.execSQL("UPDATE workout SET boxCell = ? WHERE id = ?", new Object[]{cell, cursor.getLong(0)});
+            }
+        }
+    }
+
+    /**
+     * Calculates the bounds of all workouts from their samples
+     */
+    public static void rebuild(SupportSQLiteDatabase db) throws IOException {
+        WorkoutBounds bounds = new WorkoutBounds();
+        StoredTracks.forEach(db, (workoutId, workoutType, samples) -> {
+            for (WorkoutSample sample : samples) {
+                bounds.add(sample.lat, sample.lon);
+            }
+            bounds.update(db, workoutId);
+        });
+    }
+
+}
@@ -74,10 +74,14 @@ public class WorkoutBuilder {
         return workout;
     }
 
-    public Workout insertWorkout(Context context) {
+    /**
+     * Inserts the workout on the database thread
+     *
+     * @param onInserted called on the main thread when the workout was stored
+     */
+    public void insertWorkout(Context context, WorkoutRepository.Callback<Workout> onInserted) {
         Workout workout = create(context);
-        Instance.getInstance(context).db.workoutDao().insertWorkout(workout);
-        return workout;
+        Instance.getInstance(context).workoutRepository.insertWorkout(workout, () -> onInserted.onResult(workout));
     }
 
     public WorkoutType getWorkoutType() {
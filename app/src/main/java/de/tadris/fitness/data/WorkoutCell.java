@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import de.tadris.fitness.util.GeoHash;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * Geohash cell which was passed by a workout. Used as spatial index over all samples.
+ */
+@Entity(tableName = "workout_cell",
+        primaryKeys = {"cell", "workout_id"},
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE),
+        indices = @Index("workout_id"))
+public class WorkoutCell {
+
+    /**
+     * Cells of this precision are about 150 x 150 meters
+     */
+    public static final int PRECISION = 7;
+
+    @NonNull
+    public String cell = "";
+
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    /**
+     * @return the distinct cells of all samples of the cursor
+     */
+    public static WorkoutCell[] collect(long workoutId, SampleCursor samples) {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (int i = 0; samples.moveToPosition(i); i++) {
+            WorkoutSample sample = samples.getSample();
+            hashes.add(GeoHash.encode(sample.lat, sample.lon, PRECISION));
+        }
+        WorkoutCell[] cells = new WorkoutCell[hashes.size()];
+        int i = 0;
+        for (String hash : hashes) {
+            WorkoutCell cell = new WorkoutCell();
+            cell.cell = hash;
+            cell.workoutId = workoutId;
+            cells[i++] = cell;
+        }
+        return cells;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.tadris.fitness.util.GeoHash;
+
+/**
+ * Builds the workout_cell table from the stored samples.
+ *
+ * New workouts are indexed by {@link WorkoutDao} when they are inserted, deleting is handled by the
+ * foreign key. This is only needed after a migration or after samples were inserted one by one.
+ */
+public class WorkoutCells {
+
+    private WorkoutCells() {
+    }
+
+    public static void rebuild(SupportSQLiteDatabase db) throws IOException {
+        db.execSQL("DELETE FROM workout_cell");
+        Set<String> cells = new HashSet<>();
+        StoredTracks.forEach(db, (workoutId, workoutType, samples) -> {
+            for (WorkoutSample sample : samples) {
+                cells.add(GeoHash.encode(sample.lat, sample.lon, WorkoutCell.PRECISION));
+            }
+            insert(db, workoutId, cells);
+        });
+    }
+
+    private static void insert(SupportSQLiteDatabase db, long workoutId, Set<String> cells) {
+        for (String cell : cells) {
+            db.execSQL("INSERT OR IGNORE INTO workout_cell (cell, workout_id) VALUES (?, ?)", new Object[]{cell, workoutId});
+        }
+        cells.clear();
+    }
+
+}
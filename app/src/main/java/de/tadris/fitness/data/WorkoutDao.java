@@ -19,38 +19,480 @@
 
 package de.tadris.fitness.data;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
+
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.tadris.fitness.util.GeoHash;
+import de.tadris.fitness.util.RouteFingerprint;
 
 @Dao
-public interface WorkoutDao {
+public abstract class WorkoutDao {
+
+    private static final String TAG = "WorkoutDao";
 
-    @Query("SELECT * FROM workout_sample WHERE workout_id = :workout_id")
-    WorkoutSample[] getAllSamplesOfWorkout(long workout_id);
+    /**
+     * Maximum number of cell ranges which are looked up for a bounding box query
+     */
+    private static final int MAX_QUERY_CELLS = 32;
+
+    @Query("SELECT * FROM workout_sample WHERE workout_id = :workout_id ORDER BY relativeTime")
+    public abstract WorkoutSample[] getAllSamplesOfWorkout(long workout_id);
 
     @Query("SELECT * FROM workout ORDER BY start DESC")
-    Workout[] getWorkouts();
+    public abstract Workout[] getWorkouts();
+
+    @Query("SELECT * FROM workout WHERE id = :id")
+    public abstract Workout getWorkoutById(long id);
+
+    @Query("SELECT id FROM workout")
+    public abstract long[] getWorkoutIds();
+
+    @Query("SELECT COUNT(*) FROM workout")
+    public abstract int getWorkoutCount();
+
+    @Query("SELECT * FROM workout WHERE id > :id ORDER BY id LIMIT :limit")
+    abstract Workout[] getWorkoutsAfter(long id, int limit);
+
+    @Query("SELECT COUNT(*) FROM workout WHERE id <= :id")
+    abstract int countWorkoutsUpTo(long id);
+
+    @Query("SELECT id, start, duration, length, workoutType, substr(comment, 1, 34) AS comment FROM workout ORDER BY start DESC LIMIT :limit OFFSET :offset")
+    public abstract WorkoutSummary[] getWorkoutSummaries(int offset, int limit);
 
     @Query("SELECT * FROM workout_sample")
-    WorkoutSample[] getSamples();
+    public abstract WorkoutSample[] getSamples();
+
+    @Transaction
+    public void insertWorkoutAndSamples(Workout workout, WorkoutSample[] samples) {
+        insertWorkout(workout);
+        insertSamples(samples);
+        insertCells(WorkoutCell.collect(workout.id, SampleCursor.fromArray(samples)));
+    }
+
+    @Transaction
+    public void insertWorkoutAndTrack(Workout workout, PackedTrack track) {
+        insertWorkout(workout);
+        insertPackedTrack(track);
+        insertCells(WorkoutCell.collect(workout.id, SampleCursor.fromArray(track.getSamples())));
+    }
+
+    @Transaction
+    public void insertWorkout(Workout workout) {
+        insertWorkoutRow(workout);
+        insertSearchEntry(WorkoutSearch.createEntry(workout));
+    }
+
+    @Transaction
+    public void deleteWorkout(Workout workout) {
+        deleteWorkoutRow(workout);
+        deleteSearchEntry(workout.id);
+    }
+
+    @Transaction
+    public void updateWorkout(Workout workout) {
+        updateWorkoutRow(workout);
+        insertSearchEntry(WorkoutSearch.createEntry(workout));
+        updateBestEffortType(workout.id, workout.workoutTypeId);
+    }
+
+    /**
+     * Updates the values which are calculated from the samples, other columns are kept
+     */
+    @Transaction
+    public void updateCalculatedValues(Workout workout) {
+        updateCalculatedColumns(workout.id, workout.length, workout.avgSpeed, workout.avgPace, workout.topSpeed,
+                workout.ascent, workout.descent, workout.calorie, workout.minLat, workout.minLon, workout.maxLat,
+                workout.maxLon, workout.startCell, workout.endCell, workout.boxCell);
+        syncBestEffortType(workout.id);
+    }
+
+    @Query("UPDATE workout SET length = :length, avgSpeed = :avgSpeed, avgPace = :avgPace, topSpeed = :topSpeed, " +
+            "ascent = :ascent, descent = :descent, calorie = :calorie, minLat = :minLat, minLon = :minLon, " +
+            "maxLat = :maxLat, maxLon = :maxLon, startCell = :startCell, endCell = :endCell, " +
+            "boxCell = :boxCell WHERE id = :id")
+    abstract void updateCalculatedColumns(long id, int length, double avgSpeed, double avgPace, double topSpeed,
+                                          float ascent, float descent, int calorie, Double minLat, Double minLon,
+                                          Double maxLat, Double maxLon, String startCell, String endCell, String boxCell);
+
+    /**
+     * The best efforts are created with the type the workout had when it was read
+     */
+    @Query("UPDATE best_effort SET workoutType = (SELECT workoutType FROM workout WHERE id = :workout_id) WHERE workout_id = :workout_id")
+    abstract void syncBestEffortType(long workout_id);
 
     @Insert
-    void insertWorkoutAndSamples(Workout workout, WorkoutSample[] samples);
+    public abstract void insertSample(WorkoutSample sample);
+
+    @Query("SELECT * FROM workout_track WHERE workout_id = :workout_id")
+    public abstract PackedTrack getPackedTrack(long workout_id);
+
+    @Query("SELECT workout_id, sampleCount FROM workout_track")
+    public abstract PackedTrack.Info[] getPackedTrackInfos();
+
+    /**
+     * @param from first periodStart to include, see {@link WorkoutAggregate#getPeriodStart(String, long)}
+     * @param to   first periodStart to exclude
+     */
+    @Query("SELECT * FROM workout_aggregate WHERE period = :period AND periodStart >= :from AND periodStart < :to ORDER BY periodStart")
+    public abstract WorkoutAggregate[] getAggregates(String period, String from, String to);
+
+    @Query("SELECT 'all' AS period, '' AS periodStart, workoutType, SUM(count) AS count, SUM(distance) AS distance, SUM(duration) AS duration, SUM(ascent) AS ascent, SUM(calorie) AS calorie " +
+            "FROM workout_aggregate WHERE period = 'month' GROUP BY workoutType")
+    public abstract WorkoutAggregate[] getTotalsPerType();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertBestEfforts(BestEffort[] efforts);
+
+    @Query("DELETE FROM best_effort WHERE workout_id = :workout_id")
+    abstract void deleteBestEfforts(long workout_id);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertSplits(WorkoutSplit[] splits);
+
+    @Query("DELETE FROM workout_split WHERE workout_id = :workout_id")
+    abstract void deleteSplits(long workout_id);
+
+    @Query("SELECT * FROM workout_split WHERE workout_id = :workout_id AND splitLength = :splitLength ORDER BY number")
+    abstract WorkoutSplit[] getSplits(long workout_id, int splitLength);
+
+    /**
+     * @return the fastest effort of every type and distance
+     */
+    @Query("SELECT workout_id, workoutType, distance, MIN(duration) AS duration, startTime FROM best_effort GROUP BY workoutType, distance")
+    public abstract BestEffort[] getRecords();
+
+    @Query("UPDATE best_effort SET workoutType = :workoutType WHERE workout_id = :workout_id")
+    abstract void updateBestEffortType(long workout_id, String workoutType);
 
     @Insert
-    void insertWorkout(Workout workout);
+    abstract void insertWorkoutRow(Workout workout);
 
     @Delete
-    void deleteWorkout(Workout workout);
+    abstract void deleteWorkoutRow(Workout workout);
 
     @Update
-    void updateWorkout(Workout workout);
+    abstract void updateWorkoutRow(Workout workout);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertSearchEntry(WorkoutSearchEntry entry);
+
+    @Query("DELETE FROM workout_search WHERE rowid = :workout_id")
+    abstract void deleteSearchEntry(long workout_id);
+
+    /**
+     * @return the newest matches, only the id and the matchinfo are read
+     */
+    @Query("SELECT rowid AS id, matchinfo(workout_search, 'pcx') AS matchInfo FROM workout_search " +
+            "WHERE workout_search MATCH :query ORDER BY rowid DESC LIMIT :limit")
+    abstract WorkoutSearchResult[] getSearchCandidates(String query, int limit);
+
+    @Query("SELECT id, start, duration, length, workoutType, substr(comment, 1, 34) AS comment FROM workout WHERE id IN (:ids)")
+    abstract WorkoutSummary[] getWorkoutSummaries(long[] ids);
+
+    /**
+     * The box cell of a workout which intersects the box is either inside one of the cells covering
+     * the box or contains one of them. Both are index lookups on the box cell, only the found
+     * workouts are compared with the box.
+     *
+     * @return the ids of all workouts whose bounding box intersects the given one
+     */
+    public long[] getWorkoutIdsIntersecting(double minLat, double minLon, double maxLat, double maxLon) {
+        List<String> cells = GeoHash.getCoveringCells(minLat, minLon, maxLat, maxLon, WorkoutBounds.CELL_PRECISION, MAX_QUERY_CELLS);
+        if (cells.isEmpty()) {
+            // Inverted box
+            return new long[0];
+        }
+        StringBuilder sql = new StringBuilder("SELECT id FROM workout WHERE (");
+        List<Object> args = new ArrayList<>();
+        Set<String> enclosingCells = new LinkedHashSet<>();
+        for (String cell : cells) {
+            sql.append("boxCell >= ? AND boxCell < ? OR ");
+            args.add(cell);
+            args.add(cell + GeoHash.RANGE_END);
+            for (int length = 0; length < cell.length(); length++) {
+                enclosingCells.add(cell.substring(0, length));
+            }
+        }
+        sql.append("boxCell IN (");
+        for (String cell : enclosingCells) {
+            sql.append("?, ");
+            args.add(cell);
+        }
+        sql.setLength(sql.length() - 2);
+        sql.append(")) AND minLat <= ? AND maxLat >= ? AND minLon <= ? AND maxLon >= ? ORDER BY start DESC");
+        args.add(maxLat);
+        args.add(minLat);
+        args.add(maxLon);
+        args.add(minLon);
+        List<Long> ids = getIds(new SimpleSQLiteQuery(sql.toString(), args.toArray()));
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    @RawQuery
+    abstract List<Long> getIds(SupportSQLiteQuery query);
+
+    @Query("SELECT COUNT(*) FROM workout WHERE start = :start")
+    public abstract int countWorkoutsStartingAt(long start);
+
+    @Query("SELECT id FROM workout WHERE startCell >= :from AND startCell < :to ORDER BY start DESC")
+    abstract long[] getWorkoutIdsStartingInRange(String from, String to);
+
+    /**
+     * @param cell geohash of the area, shorter geohashes cover larger areas
+     */
+    public long[] getWorkoutIdsStartingIn(String cell) {
+        return getWorkoutIdsStartingInRange(cell, cell + GeoHash.RANGE_END);
+    }
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertSimplifiedTracks(SimplifiedTrack[] tracks);
+
+    @Query("SELECT * FROM workout_simplified WHERE workout_id = :workout_id ORDER BY level")
+    abstract SimplifiedTrack[] getSimplifiedTracks(long workout_id);
+
+    @Query("SELECT workout.id, workout.start, workout.duration, workout.length, workout.workoutType, substr(workout.comment, 1, 34) AS comment " +
+            "FROM workout JOIN workout_route ON workout_route.workout_id = workout.id " +
+            "WHERE workout_route.routeId = (SELECT routeId FROM workout_route WHERE workout_id = :workout_id) ORDER BY workout.start DESC")
+    public abstract WorkoutSummary[] getWorkoutsOnSameRoute(long workout_id);
+
+    @Query("SELECT workout.id, workout.start, workout.duration, workout.length, workout.workoutType, substr(workout.comment, 1, 34) AS comment " +
+            "FROM workout JOIN workout_route ON workout_route.workout_id = workout.id " +
+            "WHERE workout_route.routeId = :routeId ORDER BY workout.start DESC")
+    public abstract WorkoutSummary[] getWorkoutsOnRoute(long routeId);
+
+    /**
+     * @return the route id or null if the workout was not fingerprinted yet
+     */
+    @Query("SELECT routeId FROM workout_route WHERE workout_id = :workout_id")
+    public abstract Long getRouteIdOfWorkout(long workout_id);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertRouteRow(WorkoutRoute route);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract void insertRouteBands(WorkoutRouteBand[] bands);
+
+    @Query("SELECT workout_route.* FROM workout_route_band JOIN workout_route ON workout_route.workout_id = workout_route_band.workout_id " +
+            "WHERE workout_route_band.band = :band AND workout_route_band.hash = :hash")
+    abstract WorkoutRoute[] getRoutesInBand(int band, int hash);
+
+    @Query("UPDATE workout_route SET routeId = :to WHERE routeId = :from")
+    abstract void moveRoute(long from, long to);
+
+    @Query("SELECT id FROM workout WHERE id NOT IN (SELECT workout_id FROM workout_route) ORDER BY start")
+    abstract long[] getWorkoutIdsWithoutRoute();
+
+    @Insert
+    abstract void insertSamples(WorkoutSample[] samples);
 
     @Insert
-    void insertSample(WorkoutSample sample);
+    abstract void insertPackedTrack(PackedTrack track);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract void insertCells(WorkoutCell[] cells);
+
+    @Query("SELECT DISTINCT workout_id FROM workout_cell WHERE cell >= :from AND cell < :to")
+    abstract long[] getWorkoutIdsInCellRange(String from, String to);
+
+    @Query("SELECT * FROM workout_sample WHERE workout_id = :workout_id ORDER BY relativeTime")
+    abstract Cursor getSampleRowsOfWorkout(long workout_id);
+
+    @Query("SELECT * FROM workout_sample")
+    abstract Cursor getSampleRows();
+
+    /**
+     * Loads the samples of a workout regardless of whether they are stored as rows or as a packed track
+     */
+    public WorkoutSample[] getSamplesOfWorkout(long workout_id) {
+        PackedTrack track = getPackedTrack(workout_id);
+        if (track != null) {
+            return track.getSamples();
+        }
+        return getAllSamplesOfWorkout(workout_id);
+    }
+
+    /**
+     * Streams the samples of a workout regardless of the storage type. The cursor has to be closed.
+     */
+    public SampleCursor streamSamplesOfWorkout(long workout_id) {
+        PackedTrack track = getPackedTrack(workout_id);
+        if (track != null) {
+            return SampleCursor.fromArray(track.getSamples());
+        }
+        return SampleCursor.fromRows(getSampleRowsOfWorkout(workout_id));
+    }
+
+    /**
+     * Loads the samples and simplification levels of a workout. Levels are stored when a workout is
+     * saved or restored, if they are missing anyway they are computed but not stored, so this only reads.
+     */
+    public WorkoutTrack getTrackOfWorkout(long workout_id) {
+        WorkoutTrack track;
+        try (SampleCursor cursor = streamSamplesOfWorkout(workout_id)) {
+            track = WorkoutTrack.fromCursor(cursor);
+        }
+        SimplifiedTrack[] levels = getSimplifiedTracks(workout_id);
+        if (levels.length != SimplifiedTrack.TOLERANCES.length && track.size() > 0) {
+            levels = track.createSimplifications(workout_id);
+        }
+        return track.withSimplifications(levels);
+    }
+
+    /**
+     * Stores the route of a workout. It joins all routes which have a workout with a similar
+     * fingerprint, so routes which were separate before can be merged.
+     */
+    @Transaction
+    public void insertWorkoutRoute(WorkoutRoute route) {
+        int[] signature = route.getSignature();
+        WorkoutRouteBand[] bands = route.createBands();
+        Set<Long> similarRoutes = new HashSet<>();
+        for (WorkoutRouteBand band : bands) {
+            for (WorkoutRoute candidate : getRoutesInBand(band.band, band.hash)) {
+                if (candidate.workoutId == route.workoutId || similarRoutes.contains(candidate.routeId)) {
+                    continue;
+                }
+                int[] candidateSignature = candidate.getSignature();
+                if (candidateSignature != null && RouteFingerprint.getSimilarity(signature, candidateSignature) >= RouteFingerprint.SAME_ROUTE_SIMILARITY) {
+                    similarRoutes.add(candidate.routeId);
+                }
+            }
+        }
+        long routeId = route.workoutId;
+        for (long id : similarRoutes) {
+            routeId = Math.min(routeId, id);
+        }
+        for (long id : similarRoutes) {
+            if (id != routeId) {
+                moveRoute(id, routeId);
+            }
+        }
+        route.routeId = routeId;
+        insertRouteRow(route);
+        insertRouteBands(bands);
+    }
+
+    /**
+     * Fingerprints all workouts which have no route yet, e.g. workouts from a backup. Workouts which
+     * are deleted meanwhile are skipped.
+     *
+     * @return the number of fingerprinted workouts
+     */
+    public int indexMissingRoutes() {
+        int count = 0;
+        for (long id : getWorkoutIdsWithoutRoute()) {
+            try {
+                insertWorkoutRoute(getTrackOfWorkout(id).createRoute(id));
+                count++;
+            } catch (SQLiteConstraintException e) {
+                Log.w(TAG, "Cannot fingerprint workout " + id, e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Loads the splits of a workout for one unit system. The splits of all unit systems are
+     * stored with the workout, see {@link WorkoutSplits#SPLIT_LENGTHS}.
+     *
+     * @param splitLength see {@link WorkoutSplits#getSplitLength}
+     */
+    public WorkoutSplit[] getSplitsOfWorkout(long workout_id, double splitLength) {
+        return getSplits(workout_id, (int) Math.round(splitLength));
+    }
+
+    /**
+     * Finds the workouts which have samples in or near the bounding box. The result can contain
+     * workouts which only passed the geohash cells at the border of the box.
+     *
+     * @return the ids of the matching workouts
+     */
+    public long[] getWorkoutIdsInBoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<String> cells = GeoHash.getCoveringCells(minLat, minLon, maxLat, maxLon, WorkoutCell.PRECISION, MAX_QUERY_CELLS);
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String cell : cells) {
+            for (long id : getWorkoutIdsInCellRange(cell, cell + GeoHash.RANGE_END)) {
+                ids.add(id);
+            }
+        }
+        long[] result = new long[ids.size()];
+        int i = 0;
+        for (long id : ids) {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Searches the comment, type and date of all workouts. Every word of the input has to match.
+     * Only the newest {@link WorkoutSearch#MAX_CANDIDATES} matches are ranked, and only the
+     * returned workouts are loaded.
+     *
+     * @return at most limit workouts, best matches first
+     */
+    public WorkoutSummary[] searchWorkouts(String input, int limit) {
+        String query = WorkoutSearch.toMatchQuery(input);
+        if (query == null) {
+            return new WorkoutSummary[0];
+        }
+        WorkoutSearchResult[] candidates = getSearchCandidates(query, Math.max(limit, WorkoutSearch.MAX_CANDIDATES));
+        Map<Long, Float> scores = new HashMap<>(candidates.length);
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            scores.put(candidates[i].id, WorkoutSearch.getScore(candidates[i].matchInfo));
+            order[i] = i;
+        }
+        // Candidates are ordered by id, so newer workouts win ties
+        Arrays.sort(order, (a, b) -> Float.compare(scores.get(candidates[b].id), scores.get(candidates[a].id)));
+        long[] ids = new long[Math.min(limit, candidates.length)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = candidates[order[i]].id;
+        }
+        WorkoutSummary[] summaries = getWorkoutSummaries(ids);
+        Arrays.sort(summaries, (a, b) -> {
+            int result = Float.compare(scores.get(b.id), scores.get(a.id));
+            return result != 0 ? result : Long.compare(b.start, a.start);
+        });
+        return summaries;
+    }
 
+    /**
+     * Streams all stored samples. Packed tracks are decoded one at a time. The cursor has to be closed.
+     */
+    public SampleCursor streamSamples() {
+        PackedTrack.Info[] infos = getPackedTrackInfos();
+        SampleCursor[] cursors = new SampleCursor[infos.length + 1];
+        cursors[0] = SampleCursor.fromRows(getSampleRows());
+        for (int i = 0; i < infos.length; i++) {
+            long workoutId = infos[i].workoutId;
+            cursors[i + 1] = SampleCursor.lazy(infos[i].sampleCount, () -> SampleCursor.fromArray(getPackedTrack(workoutId).getSamples()));
+        }
+        return SampleCursor.concat(cursors);
+    }
 
 }
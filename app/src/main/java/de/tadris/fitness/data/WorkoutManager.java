@@ -23,19 +23,6 @@ import java.util.List;
 
 public class WorkoutManager {
 
-    public static void roundSpeedValues(List<WorkoutSample> samples){
-        for(int i= 0; i < samples.size(); i++){
-            WorkoutSample sample= samples.get(i);
-            if(i == 0){
-                sample.tmpRoundedSpeed= (sample.speed+samples.get(i+1).speed) / 2;
-            }else if(i == samples.size()-1){
-                sample.tmpRoundedSpeed= (sample.speed+samples.get(i-1).speed) / 2;
-            }else{
-                sample.tmpRoundedSpeed= (sample.speed+samples.get(i-1).speed+samples.get(i+1).speed) / 3;
-            }
-        }
-    }
-
     public static void calculateInclination(List<WorkoutSample> samples){
         samples.get(0).tmpInclination= 0;
         for(int i= 1; i < samples.size(); i++){
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs all database access of the UI on a single database thread.
+ * Results are delivered to the main thread. Because there is only one database thread,
+ * operations are executed in the order they were requested.
+ */
+public class WorkoutRepository {
+
+    private static final String TAG = "WorkoutRepository";
+
+    private final AppDatabase db;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Database"));
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RouteIndex");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public WorkoutRepository(AppDatabase db) {
+        this.db = db;
+    }
+
+    public void getWorkoutById(long id, Callback<Workout> callback) {
+        query(dao -> dao.getWorkoutById(id), callback);
+    }
+
+    public void getWorkoutCount(Callback<Integer> callback) {
+        query(WorkoutDao::getWorkoutCount, callback);
+    }
+
+    public void getWorkoutSummaries(int offset, int limit, Callback<WorkoutSummary[]> callback) {
+        query(dao -> dao.getWorkoutSummaries(offset, limit), callback);
+    }
+
+    public void getAggregates(String period, String from, String to, Callback<WorkoutAggregate[]> callback) {
+        query(dao -> {
+            WorkoutAggregates.updateTimeZone(db);
+            return dao.getAggregates(period, from, to);
+        }, callback);
+    }
+
+    public void getTotalsPerType(Callback<WorkoutAggregate[]> callback) {
+        query(dao -> {
+            WorkoutAggregates.updateTimeZone(db);
+            return dao.getTotalsPerType();
+        }, callback);
+    }
+
+    /**
+     * Loads the samples of a workout into a {@link WorkoutTrack} without keeping sample objects
+     */
+    public void getTrackOfWorkout(long workoutId, Callback<WorkoutTrack> callback) {
+        query(dao -> dao.getTrackOfWorkout(workoutId), callback);
+    }
+
+    public void getWorkoutIdsInBoundingBox(double minLat, double minLon, double maxLat, double maxLon, Callback<long[]> callback) {
+        query(dao -> dao.getWorkoutIdsInBoundingBox(minLat, minLon, maxLat, maxLon), callback);
+    }
+
+    public void getWorkoutIdsIntersecting(double minLat, double minLon, double maxLat, double maxLon, Callback<long[]> callback) {
+        query(dao -> dao.getWorkoutIdsIntersecting(minLat, minLon, maxLat, maxLon), callback);
+    }
+
+    public void getWorkoutIdsStartingIn(String cell, Callback<long[]> callback) {
+        query(dao -> dao.getWorkoutIdsStartingIn(cell), callback);
+    }
+
+    /**
+     * Finds all workouts on the same route as the given one, including itself. Workouts which were
+     * not fingerprinted yet are missing, see {@link #indexMissingRoutes()}.
+     */
+    public void getWorkoutsOnSameRoute(long workoutId, Callback<WorkoutSummary[]> callback) {
+        query(dao -> dao.getWorkoutsOnSameRoute(workoutId), callback);
+    }
+
+    public void getWorkoutsOnRoute(long routeId, Callback<WorkoutSummary[]> callback) {
+        query(dao -> dao.getWorkoutsOnRoute(routeId), callback);
+    }
+
+    public void getRouteIdOfWorkout(long workoutId, Callback<Long> callback) {
+        query(dao -> dao.getRouteIdOfWorkout(workoutId), callback);
+    }
+
+    /**
+     * Fingerprints the workouts which have no route yet, e.g. workouts from before the update or from
+     * a backup. This decodes every track, so it runs on its own thread and does not block the database thread.
+     */
+    public void indexMissingRoutes() {
+        indexExecutor.execute(() -> {
+            try {
+                int count = db.workoutDao().indexMissingRoutes();
+                Log.i(TAG, "Fingerprinted " + count + " workouts");
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Cannot fingerprint workouts", e);
+            }
+        });
+    }
+
+    /**
+     * @param splitLength see {@link WorkoutSplits#getSplitLength}
+     */
+    public void getSplitsOfWorkout(long workoutId, double splitLength, Callback<WorkoutSplit[]> callback) {
+        query(dao -> dao.getSplitsOfWorkout(workoutId, splitLength), callback);
+    }
+
+    public void getRecords(Callback<BestEffort[]> callback) {
+        query(WorkoutDao::getRecords, callback);
+    }
+
+    public void searchWorkouts(String input, int limit, Callback<WorkoutSummary[]> callback) {
+        query(dao -> {
+            WorkoutSearch.updateLocale(db);
+            return dao.searchWorkouts(input, limit);
+        }, callback);
+    }
+
+    public void insertWorkout(Workout workout, @Nullable Runnable onDone) {
+        update(dao -> dao.insertWorkout(workout), onDone);
+    }
+
+    public void updateWorkout(Workout workout, @Nullable Runnable onDone) {
+        update(dao -> dao.updateWorkout(workout), onDone);
+    }
+
+    public void deleteWorkout(Workout workout, @Nullable Runnable onDone) {
+        update(dao -> dao.deleteWorkout(workout), onDone);
+    }
+
+    public void deleteWorkout(long workoutId, @Nullable Runnable onDone) {
+        update(dao -> db.runInTransaction(() -> {
+            Workout workout = dao.getWorkoutById(workoutId);
+            if (workout != null) {
+                dao.deleteWorkout(workout);
+            }
+        }), onDone);
+    }
+
+    /**
+     * Runs a task on the database thread. If it fails, the exception is thrown on the main thread.
+     */
+    public void execute(Runnable task) {
+        execute(task, null);
+    }
+
+    /**
+     * Runs a task on the database thread, e.g. saving a recorded workout
+     *
+     * @param onError is called on the main thread if the task fails, without it the exception is thrown there
+     */
+    public void execute(Runnable task, @Nullable ErrorCallback onError) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Database task failed", e);
+                mainHandler.post(() -> {
+                    if (onError != null) {
+                        onError.onError(e);
+                    } else {
+                        throw e;
+                    }
+                });
+            }
+        });
+    }
+
+    private <T> void query(Query<T> query, Callback<T> callback) {
+        execute(() -> {
+            T result = query.run(db.workoutDao());
+            mainHandler.post(() -> callback.onResult(result));
+        }, callback::onError);
+    }
+
+    private void update(Update update, @Nullable Runnable onDone) {
+        execute(() -> {
+            update.run(db.workoutDao());
+            if (onDone != null) {
+                mainHandler.post(onDone);
+            }
+        });
+    }
+
+    private interface Query<T> {
+        T run(WorkoutDao dao);
+    }
+
+    private interface Update {
+        void run(WorkoutDao dao);
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        /**
+         * Is called instead of {@link #onResult(Object)} if the query failed.
+         * The exception is thrown by default, so a failed query doesn't go unnoticed.
+         */
+        default void onError(RuntimeException e) {
+            throw e;
+        }
+    }
+
+    public interface ErrorCallback {
+        void onError(RuntimeException e);
+    }
+
+}
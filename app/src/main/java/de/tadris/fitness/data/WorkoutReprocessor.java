@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.tadris.fitness.Instance;
+import de.tadris.fitness.recording.WorkoutCalculator;
+import de.tadris.fitness.util.CalorieCalculator;
+
+/**
+ * Recalculates the derived values of all stored workouts, e.g. the calories after the weight was changed.
+ *
+ * Workouts are read in batches ordered by id. The workouts of a batch are processed in parallel on a
+ * fork-join pool, their samples are streamed through a {@link WorkoutCalculator}, the same as for
+ * recorded workouts. The results of a batch are written back in one transaction. The id of the last
+ * written workout is saved after every batch, so an interrupted or cancelled run continues where it
+ * stopped. When the weight changed since then, all workouts are processed again.
+ */
+public class WorkoutReprocessor {
+
+    private static final String TAG = "WorkoutReprocessor";
+
+    private static final int BATCH_SIZE = 32;
+
+    private static final String PREFERENCES_NAME = "reprocessing";
+    private static final String KEY_POSITION = "position";
+    private static final String KEY_WEIGHT = "weight";
+
+    private final AppDatabase db;
+    private final SharedPreferences preferences;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final double weight;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param listener is called on the main thread
+     */
+    public WorkoutReprocessor(Context context, Listener listener) {
+        Instance instance = Instance.getInstance(context);
+        this.db = instance.db;
+        this.preferences = getPreferences(context);
+        this.listener = listener;
+        this.weight = instance.userPreferences.getUserWeight();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return whether the last run was cancelled or interrupted and can be continued
+     */
+    public static boolean isUnfinished(Context context) {
+        return getPreferences(context).contains(KEY_POSITION);
+    }
+
+    /**
+     * Starts processing on a background thread. Continues an unfinished run if there is one.
+     */
+    public void start() {
+        new Thread(this::run, "Reprocessing").start();
+    }
+
+    /**
+     * Stops after the current batch. The run can be continued later.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void run() {
+        WorkoutDao dao = db.workoutDao();
+        long position = Long.MIN_VALUE;
+        if (preferences.getFloat(KEY_WEIGHT, Float.NaN) == (float) weight) {
+            // Continue the unfinished run, it used the same weight
+            position = preferences.getLong(KEY_POSITION, Long.MIN_VALUE);
+        }
+        preferences.edit()
+                .putLong(KEY_POSITION, position)
+                .putFloat(KEY_WEIGHT, (float) weight)
+                .apply();
+        int total = dao.getWorkoutCount();
+        int done = dao.countWorkoutsUpTo(position);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            while (!cancelled) {
+                Workout[] batch = dao.getWorkoutsAfter(position, BATCH_SIZE);
+                if (batch.length == 0) {
+                    break;
+                }
+                Result[] results = new Result[batch.length];
+                pool.invoke(new ProcessTask(batch, results, 0, batch.length));
+                db.runInTransaction(() -> {
+                    for (Result result : results) {
+                        // Only the recalculated columns, the workout could have been edited in the meantime
+                        dao.updateCalculatedValues(result.workout);
+                        dao.deleteBestEfforts(result.workout.id);
+                        dao.insertBestEfforts(result.bestEfforts);
+                        dao.deleteSplits(result.workout.id);
+                        dao.insertSplits(result.splits);
+                    }
+                });
+                position = batch[batch.length - 1].id;
+                preferences.edit().putLong(KEY_POSITION, position).apply();
+                done += batch.length;
+                int progress = done;
+                mainHandler.post(() -> listener.onProgress(progress, total));
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Reprocessing failed", e);
+            mainHandler.post(() -> listener.onFailed(e));
+            return;
+        } finally {
+            pool.shutdown();
+        }
+        if (cancelled) {
+            mainHandler.post(listener::onCancelled);
+        } else {
+            preferences.edit().clear().apply();
+            mainHandler.post(listener::onFinished);
+        }
+    }
+
+    private Result process(Workout workout) {
+        WorkoutCalculator calculator = WorkoutCalculator.forStoredSamples();
+        try (SampleCursor cursor = db.workoutDao().streamSamplesOfWorkout(workout.id)) {
+            while (cursor.moveToNext()) {
+                calculator.addStoredSample(cursor.getSample());
+            }
+        }
+        if (calculator.getSampleCount() > 0) {
+            calculator.applyTo(workout, weight);
+        } else {
+            // Workouts which were entered manually have no samples, only the calories can be recalculated
+            workout.calorie = CalorieCalculator.calculateCalories(workout, weight);
+        }
+        Result result = new Result();
+        result.workout = workout;
+        result.bestEfforts = calculator.getBestEfforts(workout);
+        result.splits = calculator.getSplits(workout.id);
+        return result;
+    }
+
+    private static class Result {
+        Workout workout;
+        BestEffort[] bestEfforts;
+        WorkoutSplit[] splits;
+    }
+
+    /**
+     * Splits the batch until single workouts are left
+     */
+    private class ProcessTask extends RecursiveAction {
+
+        private final Workout[] workouts;
+        private final Result[] results;
+        private final int from, to;
+
+        ProcessTask(Workout[] workouts, Result[] results, int from, int to) {
+            this.workouts = workouts;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = process(workouts[from]);
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(new ProcessTask(workouts, results, from, middle), new ProcessTask(workouts, results, middle, to));
+            }
+        }
+    }
+
+    public interface Listener {
+
+        void onProgress(int done, int total);
+
+        void onFinished();
+
+        void onCancelled();
+
+        void onFailed(Exception e);
+
+    }
+
+}
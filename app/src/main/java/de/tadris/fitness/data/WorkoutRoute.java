@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import de.tadris.fitness.util.RouteFingerprint;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * Route fingerprint of a workout. All workouts on the same route share the same routeId.
+ */
+@Entity(tableName = "workout_route",
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE),
+        indices = @Index("routeId"))
+public class WorkoutRoute {
+
+    /**
+     * Simplification level which is fingerprinted, see {@link SimplifiedTrack#TOLERANCES}
+     */
+    public static final int SIMPLIFICATION_LEVEL = 2;
+
+    @PrimaryKey
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    /**
+     * Id of the oldest workout which was assigned to the route, the same for all workouts on it
+     */
+    public long routeId;
+
+    /**
+     * MinHash signature, null if the workout has no samples
+     */
+    @Nullable
+    public byte[] signature;
+
+    @Nullable
+    public int[] getSignature() {
+        return signature != null ? RouteFingerprint.fromBytes(signature) : null;
+    }
+
+    /**
+     * @param points indices of the samples of the simplification level
+     */
+    public static WorkoutRoute create(long workoutId, double[] lat, double[] lon, int[] points) {
+        WorkoutRoute route = new WorkoutRoute();
+        route.workoutId = workoutId;
+        route.routeId = workoutId;
+        int[] signature = RouteFingerprint.compute(lat, lon, points);
+        route.signature = signature != null ? RouteFingerprint.toBytes(signature) : null;
+        return route;
+    }
+
+    /**
+     * @return the band index entries of this route
+     */
+    WorkoutRouteBand[] createBands() {
+        int[] signature = getSignature();
+        if (signature == null) {
+            return new WorkoutRouteBand[0];
+        }
+        int[] hashes = RouteFingerprint.getBandHashes(signature);
+        WorkoutRouteBand[] bands = new WorkoutRouteBand[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            WorkoutRouteBand band = new WorkoutRouteBand();
+            band.band = i;
+            band.hash = hashes[i];
+            band.workoutId = workoutId;
+            bands[i] = band;
+        }
+        return bands;
+    }
+
+}
@@ -23,11 +23,11 @@ import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.github.mikephil.charting.data.Entry;
 
 import org.mapsforge.core.model.LatLong;
 
@@ -38,7 +38,8 @@ import static androidx.room.ForeignKey.CASCADE;
                 entity = Workout.class,
                 parentColumns = "id",
                 childColumns = "workout_id",
-                onDelete = CASCADE))
+                onDelete = CASCADE),
+        indices = @Index(value = {"workout_id", "relativeTime"}))
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class WorkoutSample{
 
@@ -60,18 +61,6 @@ public class WorkoutSample{
 
     public double speed;
 
-    @JsonIgnore
-    @Ignore
-    public Entry tmpHeightEntry;
-
-    @JsonIgnore
-    @Ignore
-    public Entry tmpSpeedEntry;
-
-    @JsonIgnore
-    @Ignore
-    public double tmpRoundedSpeed;
-
     @JsonIgnore
     @Ignore
     public double tmpElevation;
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the rows of the workout_search table and the queries against it.
+ *
+ * Type titles and month names are indexed in the language of the device. The index is built again
+ * when the language changed, see {@link #updateLocale(AppDatabase)}.
+ */
+public class WorkoutSearch {
+
+    /**
+     * Number of matches which are ranked at most, the newest matches are taken
+     */
+    static final int MAX_CANDIDATES = 1000;
+
+    /**
+     * Weight of a hit in the comment, type and date column
+     */
+    private static final float[] COLUMN_WEIGHTS = {3f, 2f, 1f};
+
+    private static final String PREFERENCES_NAME = "search";
+    private static final String KEY_LOCALE = "locale";
+
+    private static final Map<WorkoutType, String> typeTitles = new EnumMap<>(WorkoutType.class);
+    private static Context context;
+
+    private WorkoutSearch() {
+    }
+
+    /**
+     * Has to be called before any workout is written, so the type titles can be indexed
+     */
+    public static void init(Context context) {
+        WorkoutSearch.context = context.getApplicationContext();
+        loadTypeTitles();
+    }
+
+    private static void loadTypeTitles() {
+        synchronized (typeTitles) {
+            for (WorkoutType type : WorkoutType.values()) {
+                typeTitles.put(type, context.getString(type.title));
+            }
+        }
+    }
+
+    /**
+     * Builds the index again if the language changed since it was built. Has to be called on the database thread.
+     */
+    public static void updateLocale(AppDatabase db) {
+        String locale = Locale.getDefault().toString();
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (locale.equals(preferences.getString(KEY_LOCALE, null))) {
+            return;
+        }
+        loadTypeTitles();
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        db.runInTransaction(() -> rebuild(database));
+        preferences.edit().putString(KEY_LOCALE, locale).apply();
+    }
+
+    public static WorkoutSearchEntry createEntry(Workout workout) {
+        return createEntry(workout.id, workout.start, workout.comment, workout.workoutTypeId);
+    }
+
+    private static WorkoutSearchEntry createEntry(long id, long start, String comment, String workoutTypeId) {
+        WorkoutType type = WorkoutType.getTypeById(workoutTypeId);
+        WorkoutSearchEntry entry = new WorkoutSearchEntry();
+        entry.workoutId = id;
+        entry.comment = comment != null ? comment : "";
+        synchronized (typeTitles) {
+            String title = typeTitles.get(type);
+            entry.type = title != null ? type.id + " " + title : type.id;
+        }
+        entry.date = getDateTokens(start);
+        return entry;
+    }
+
+    /**
+     * e.g. "2020-05-03 May Sunday" in the default locale, so "may 2020" or "2020-05" find the workout
+     */
+    static String getDateTokens(long time) {
+        return new SimpleDateFormat("yyyy-MM-dd MMMM EEEE", Locale.getDefault()).format(new Date(time));
+    }
+
+    /**
+     * Converts the user input into a query where every word has to match the beginning of a token
+     *
+     * @return the query or null if the input contains no words
+     */
+    public static String toMatchQuery(String input) {
+        StringBuilder query = new StringBuilder();
+        for (String word : input.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(word).append('*');
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Calculates the rank of a match from the result of matchinfo(workout_search, 'pcx').
+     * Hits of rare phrases and hits in the comment count more.
+     */
+    static float getScore(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt();
+        int columns = buffer.getInt();
+        float score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int hitsInRow = buffer.getInt();
+                buffer.getInt(); // hits in all rows
+                int rowsWithHits = buffer.getInt();
+                if (hitsInRow > 0 && column < COLUMN_WEIGHTS.length) {
+                    score += COLUMN_WEIGHTS[column] * hitsInRow / (float) rowsWithHits;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Fills the search table from the workout table
+     */
+    public static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM workout_search");
+        try (Cursor cursor = db.query("SELECT id, start, comment, workoutType FROM workout")) {
+            while (cursor.moveToNext()) {
+                WorkoutSearchEntry entry = createEntry(cursor.getLong(0), cursor.getLong(1), cursor.getString(2), cursor.getString(3));
+                db.execSQL("INSERT INTO workout_search (rowid, comment, type, date) VALUES (?, ?, ?, ?)",
+                        new Object[]{entry.workoutId, entry.comment, entry.type, entry.date});
+            }
+        }
+    }
+
+}
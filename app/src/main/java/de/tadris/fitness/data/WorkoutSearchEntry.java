@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full text search row of a workout, the rowid is the id of the workout.
+ * The rows are written by {@link WorkoutDao} together with the workout.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "workout_search")
+public class WorkoutSearchEntry {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public long workoutId;
+
+    public String comment;
+
+    /**
+     * Id and localized title of the workout type
+     */
+    public String type;
+
+    /**
+     * Date of the workout in several formats, see {@link WorkoutSearch#getDateTokens(long)}
+     */
+    public String date;
+
+}
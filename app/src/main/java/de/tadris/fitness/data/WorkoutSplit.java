@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+import static androidx.room.ForeignKey.CASCADE;
+
+/**
+ * Time and elevation change of one kilometre or mile of a workout
+ */
+@Entity(tableName = "workout_split",
+        primaryKeys = {"workout_id", "splitLength", "number"},
+        foreignKeys = @ForeignKey(
+                entity = Workout.class,
+                parentColumns = "id",
+                childColumns = "workout_id",
+                onDelete = CASCADE))
+public class WorkoutSplit {
+
+    @ColumnInfo(name = "workout_id")
+    public long workoutId;
+
+    /**
+     * Length of a split in meters rounded to whole meters, identifies the unit system, see {@link WorkoutSplits#getSplitLength}
+     */
+    public int splitLength;
+
+    /**
+     * Index of the split, starting with 0
+     */
+    public int number;
+
+    /**
+     * Distance in meters, only the last split can be shorter than the split length
+     */
+    public double distance;
+
+    /**
+     * Duration in milliseconds without pauses
+     */
+    public long duration;
+
+    public float ascent;
+
+    public float descent;
+
+    /**
+     * @return pace in min/km
+     */
+    public double getPace() {
+        return ((double) duration / 1000 / 60) / (distance / 1000);
+    }
+
+}
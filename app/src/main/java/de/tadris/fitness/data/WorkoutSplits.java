@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tadris.fitness.util.GeoUtils;
+import de.tadris.fitness.util.unit.Imperial;
+import de.tadris.fitness.util.unit.Metric;
+import de.tadris.fitness.util.unit.Unit;
+
+/**
+ * Splits a track into parts of one kilometre or mile, see {@link WorkoutSplit}
+ */
+public class WorkoutSplits {
+
+    /**
+     * Split lengths of the metric and the imperial systems. Splits are stored for both,
+     * so they don't have to be calculated again when the unit system is changed.
+     */
+    public static final double[] SPLIT_LENGTHS = {getSplitLength(new Metric()), getSplitLength(new Imperial())};
+
+    /**
+     * Remaining distance in meters for which no partial split is created at the end
+     */
+    private static final double MIN_LAST_SPLIT = 10;
+
+    private final double splitLength;
+    private final List<WorkoutSplit> splits = new ArrayList<>();
+
+    private int count = 0;
+    private double lastLat, lastLon, lastElevation;
+    private long lastTime;
+    private double distance = 0;
+    private double splitStartDistance = 0;
+    private long splitStartTime;
+    private float ascent, descent;
+
+    /**
+     * @param splitLength length of a split in meters
+     */
+    public WorkoutSplits(double splitLength) {
+        this.splitLength = splitLength;
+    }
+
+    /**
+     * @return the length of one long distance unit of the system in meters
+     */
+    public static double getSplitLength(Unit unit) {
+        return 1000 / unit.getDistanceFromKilometers(1);
+    }
+
+    /**
+     * Samples have to be added in the order they were recorded
+     *
+     * @param relativeTime time since the start without pauses
+     */
+    public void add(double lat, double lon, double elevation, long relativeTime) {
+        if (count == 0) {
+            splitStartTime = relativeTime;
+        } else {
+            double segment = GeoUtils.sphericalDistance(lastLat, lastLon, lat, lon);
+            double elevationDiff = elevation - lastElevation;
+            if (elevationDiff > 0) {
+                ascent += elevationDiff;
+            } else {
+                descent -= elevationDiff;
+            }
+            // A long segment can finish several splits, the end times are interpolated
+            while (distance + segment >= splitStartDistance + splitLength) {
+                double splitEnd = splitStartDistance + splitLength;
+                double fraction = segment > 0 ? (splitEnd - distance) / segment : 1;
+                long splitEndTime = lastTime + Math.round((relativeTime - lastTime) * fraction);
+                splits.add(createSplit(splits.size(), splitLength, splitEndTime - splitStartTime));
+                ascent = 0;
+                descent = 0;
+                splitStartDistance = splitEnd;
+                splitStartTime = splitEndTime;
+            }
+            distance += segment;
+        }
+        lastLat = lat;
+        lastLon = lon;
+        lastElevation = elevation;
+        lastTime = relativeTime;
+        count++;
+    }
+
+    private WorkoutSplit createSplit(int number, double distance, long duration) {
+        WorkoutSplit split = new WorkoutSplit();
+        split.splitLength = (int) Math.round(splitLength);
+        split.number = number;
+        split.distance = distance;
+        split.duration = duration;
+        split.ascent = ascent;
+        split.descent = descent;
+        return split;
+    }
+
+    /**
+     * @return all finished splits and the remaining part of the track as last split
+     */
+    public WorkoutSplit[] create(long workoutId) {
+        List<WorkoutSplit> result = new ArrayList<>(splits);
+        double remaining = distance - splitStartDistance;
+        if (remaining >= MIN_LAST_SPLIT) {
+            result.add(createSplit(splits.size(), remaining, lastTime - splitStartTime));
+        }
+        for (WorkoutSplit split : result) {
+            split.workoutId = workoutId;
+        }
+        return result.toArray(new WorkoutSplit[0]);
+    }
+
+    /**
+     * Calculates the splits of all workouts from their samples for all {@link #SPLIT_LENGTHS}
+     */
+    public static void rebuild(SupportSQLiteDatabase db) throws IOException {
+        db.execSQL("DELETE FROM workout_split");
+        StoredTracks.forEach(db, (workoutId, workoutType, samples) -> {
+            for (double splitLength : SPLIT_LENGTHS) {
+                WorkoutSplits splits = new WorkoutSplits(splitLength);
+                for (WorkoutSample sample : samples) {
+                    splits.add(sample.lat, sample.lon, sample.elevation, sample.relativeTime);
+                }
+                for (WorkoutSplit split : splits.create(workoutId)) {
+                    db.execSQL("INSERT OR REPLACE INTO workout_split (workout_id, splitLength, number, distance, duration, ascent, descent) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                            new Object[]{split.workoutId, split.splitLength, split.number, split.distance, split.duration, split.ascent, split.descent});
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * The columns of a {@link Workout} which are needed to show it in the workout list.
+ * The comment is truncated by the query.
+ */
+public class WorkoutSummary {
+
+    public long id;
+
+    public long start;
+
+    public long duration;
+
+    /**
+     * Length of workout in meters
+     */
+    public int length;
+
+    @ColumnInfo(name = "workoutType")
+    public String workoutTypeId;
+
+    public String comment;
+
+    public WorkoutType getWorkoutType() {
+        return WorkoutType.getTypeById(workoutTypeId);
+    }
+
+}
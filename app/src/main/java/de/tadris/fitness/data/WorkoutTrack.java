@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.data;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+
+/**
+ * Immutable columnar copy of the samples of a workout, used by the workout viewers.
+ *
+ * Values which are only needed for displaying, like the rounded speed, are derived on first access.
+ */
+public final class WorkoutTrack {
+
+    private final long[] relativeTime;
+    private final double[] lat;
+    private final double[] lon;
+    private final float[] elevation;
+    private final float[] speed;
+
+    /**
+     * Indices of the kept samples for every level of {@link SimplifiedTrack#TOLERANCES}
+     */
+    private final int[][] simplifications;
+
+    private float[] roundedSpeed;
+
+    private WorkoutTrack(int size) {
+        relativeTime = new long[size];
+        lat = new double[size];
+        lon = new double[size];
+        elevation = new float[size];
+        speed = new float[size];
+        simplifications = new int[0][];
+    }
+
+    private WorkoutTrack(WorkoutTrack track, int[][] simplifications) {
+        relativeTime = track.relativeTime;
+        lat = track.lat;
+        lon = track.lon;
+        elevation = track.elevation;
+        speed = track.speed;
+        this.simplifications = simplifications;
+    }
+
+    /**
+     * Reads all samples of the cursor, the cursor is not closed
+     */
+    public static WorkoutTrack fromCursor(SampleCursor cursor) {
+        WorkoutTrack track = new WorkoutTrack(cursor.getCount());
+        for (int i = 0; cursor.moveToPosition(i); i++) {
+            WorkoutSample sample = cursor.getSample();
+            track.relativeTime[i] = sample.relativeTime;
+            track.lat[i] = sample.lat;
+            track.lon[i] = sample.lon;
+            track.elevation[i] = (float) sample.elevation;
+            track.speed[i] = (float) sample.speed;
+        }
+        return track;
+    }
+
+    /**
+     * @return a track with the same samples and the given simplification levels
+     */
+    WorkoutTrack withSimplifications(SimplifiedTrack[] levels) {
+        int[][] simplifications = new int[levels.length][];
+        for (int i = 0; i < levels.length; i++) {
+            simplifications[i] = levels[i].getIndices();
+        }
+        return new WorkoutTrack(this, simplifications);
+    }
+
+    SimplifiedTrack[] createSimplifications(long workoutId) {
+        return SimplifiedTrack.create(workoutId, lat, lon);
+    }
+
+    WorkoutRoute createRoute(long workoutId) {
+        int[] points = simplifications.length > WorkoutRoute.SIMPLIFICATION_LEVEL ? simplifications[WorkoutRoute.SIMPLIFICATION_LEVEL] : new int[0];
+        return WorkoutRoute.create(workoutId, lat, lon, points);
+    }
+
+    /**
+     * Selects the simplification level for displaying the track
+     *
+     * @param maxTolerance the deviation in meters which is not visible, e.g. the size of a pixel
+     * @return the indices of the samples to display or null if all samples should be displayed
+     */
+    public int[] getSimplification(double maxTolerance) {
+        int[] result = null;
+        for (int level = 0; level < simplifications.length; level++) {
+            if (SimplifiedTrack.TOLERANCES[level] <= maxTolerance) {
+                result = simplifications[level];
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return relativeTime.length;
+    }
+
+    public long getRelativeTime(int index) {
+        return relativeTime[index];
+    }
+
+    public double getLat(int index) {
+        return lat[index];
+    }
+
+    public double getLon(int index) {
+        return lon[index];
+    }
+
+    public LatLong getLatLong(int index) {
+        return new LatLong(lat[index], lon[index]);
+    }
+
+    public float getElevation(int index) {
+        return elevation[index];
+    }
+
+    public float getSpeed(int index) {
+        return speed[index];
+    }
+
+    /**
+     * @return the average of the speed of this sample and its neighbours
+     */
+    public float getRoundedSpeed(int index) {
+        return getRoundedSpeed()[index];
+    }
+
+    private synchronized float[] getRoundedSpeed() {
+        if (roundedSpeed == null) {
+            int size = size();
+            float[] result = new float[size];
+            for (int i = 0; i < size; i++) {
+                if (size == 1) {
+                    result[i] = speed[i];
+                } else if (i == 0) {
+                    result[i] = (speed[i] + speed[i + 1]) / 2;
+                } else if (i == size - 1) {
+                    result[i] = (speed[i] + speed[i - 1]) / 2;
+                } else {
+                    result[i] = (speed[i] + speed[i - 1] + speed[i + 1]) / 3;
+                }
+            }
+            roundedSpeed = result;
+        }
+        return roundedSpeed;
+    }
+
+    public BoundingBox getBoundingBox() {
+        double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < size(); i++) {
+            minLat = Math.min(minLat, lat[i]);
+            minLon = Math.min(minLon, lon[i]);
+            maxLat = Math.max(maxLat, lat[i]);
+            maxLon = Math.max(maxLon, lon[i]);
+        }
+        return new BoundingBox(minLat, minLon, maxLat, maxLon);
+    }
+
+}
@@ -31,6 +31,7 @@ import java.util.Arrays;
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
 import de.tadris.fitness.data.AppDatabase;
+import de.tadris.fitness.data.SampleCursor;
 import de.tadris.fitness.util.unit.UnitUtils;
 
 public class BackupController {
@@ -56,9 +57,11 @@ public class BackupController {
         listener.onStatusChanged(20, context.getString(R.string.workouts));
         saveWorkoutsToContainer();
         listener.onStatusChanged(40, context.getString(R.string.locationData));
-        saveSamplesToContainer();
-        listener.onStatusChanged(60, context.getString(R.string.converting));
-        writeContainerToOutputFile();
+        try (SampleCursor samples = database.workoutDao().streamSamples()) {
+            saveSamplesToContainer(samples);
+            listener.onStatusChanged(60, context.getString(R.string.converting));
+            writeContainerToOutputFile();
+        }
         listener.onStatusChanged(100, context.getString(R.string.finished));
     }
 
@@ -72,15 +75,18 @@ public class BackupController {
         dataContainer= new FitoTrackDataContainer();
         dataContainer.setVersion(VERSION);
         dataContainer.setWorkouts(new ArrayList<>());
-        dataContainer.setSamples(new ArrayList<>());
     }
 
     private void saveWorkoutsToContainer(){
         dataContainer.getWorkouts().addAll(Arrays.asList(database.workoutDao().getWorkouts()));
     }
 
-    private void saveSamplesToContainer(){
-        dataContainer.getSamples().addAll(Arrays.asList(database.workoutDao().getSamples()));
+    /**
+     * The samples are read from the cursor while the container is written, so they never have to be in memory at once.
+     * Packed tracks are unpacked so the backup format stays the same for both storage types.
+     */
+    private void saveSamplesToContainer(SampleCursor samples){
+        dataContainer.setSamples(samples.asList(sample -> sample));
     }
 
     private void writeContainerToOutputFile() throws IOException {
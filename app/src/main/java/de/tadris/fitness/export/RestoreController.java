@@ -30,8 +30,13 @@ import java.io.IOException;
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
 import de.tadris.fitness.data.AppDatabase;
+import de.tadris.fitness.data.BestEfforts;
+import de.tadris.fitness.data.SimplifiedTrack;
 import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutBounds;
+import de.tadris.fitness.data.WorkoutCells;
 import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutSplits;
 
 public class RestoreController {
 
@@ -53,6 +58,7 @@ public class RestoreController {
         loadDataFromFile();
         checkVersion();
         restoreDatabase();
+        Instance.getInstance(context).workoutRepository.indexMissingRoutes();
         listener.onStatusChanged(100, context.getString(R.string.finished));
     }
 
@@ -73,6 +79,7 @@ public class RestoreController {
             resetDatabase();
             restoreWorkouts();
             restoreSamples();
+            indexSamples();
         });
     }
 
@@ -98,6 +105,19 @@ public class RestoreController {
         }
     }
 
+    private void indexSamples(){
+        try {
+            WorkoutCells.rebuild(database.getOpenHelper().getWritableDatabase());
+            WorkoutBounds.rebuild(database.getOpenHelper().getWritableDatabase());
+            BestEfforts.rebuild(database.getOpenHelper().getWritableDatabase());
+            WorkoutSplits.rebuild(database.getOpenHelper().getWritableDatabase());
+            SimplifiedTrack.rebuild(database.getOpenHelper().getWritableDatabase());
+        } catch (IOException e) {
+            // Restored samples are always stored as rows, so no packed track has to be decoded
+            throw new IllegalStateException(e);
+        }
+    }
+
     public interface ImportStatusListener{
         void onStatusChanged(int progress, String action);
     }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.map;
+
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.graphics.Path;
+import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+
+import java.util.Arrays;
+
+/**
+ * Draws the route of a running recording. Points are only appended, their pixel positions are
+ * projected once per zoom level and kept, so adding a point doesn't touch the previous points.
+ * Redraws requested by new points are coalesced to one per display frame.
+ */
+public class LiveRouteLayer extends Layer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Paint paint;
+    private final Path path = AndroidGraphicFactory.INSTANCE.createPath();
+
+    private int size = 0;
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private double[] lon = new double[INITIAL_CAPACITY];
+
+    private final SparseArray<ProjectedPoints> projections = new SparseArray<>();
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback redrawCallback = frameTimeNanos -> {
+        redrawScheduled = false;
+        requestRedraw();
+    };
+    private boolean redrawScheduled = false;
+
+    /**
+     * Has to be created on the main thread
+     */
+    public LiveRouteLayer(int color) {
+        paint = AndroidGraphicFactory.INSTANCE.createPaint();
+        paint.setColor(color);
+        paint.setStrokeWidth(20);
+        paint.setStyle(Style.STROKE);
+    }
+
+    /**
+     * Has to be called on the main thread
+     */
+    public void addPoint(LatLong latLong) {
+        synchronized (this) {
+            if (size == lat.length) {
+                lat = Arrays.copyOf(lat, size * 2);
+                lon = Arrays.copyOf(lon, size * 2);
+            }
+            lat[size] = latLong.latitude;
+            lon[size] = latLong.longitude;
+            size++;
+        }
+        if (!redrawScheduled) {
+            redrawScheduled = true;
+            choreographer.postFrameCallback(redrawCallback);
+        }
+    }
+
+    @Override
+    public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+        if (size < 2) {
+            return;
+        }
+        ProjectedPoints points = getProjection(zoomLevel);
+        path.clear();
+        float lastX = (float) (points.x[0] - topLeftPoint.x);
+        float lastY = (float) (points.y[0] - topLeftPoint.y);
+        path.moveTo(lastX, lastY);
+        for (int i = 1; i < size; i++) {
+            float x = (float) (points.x[i] - topLeftPoint.x);
+            float y = (float) (points.y[i] - topLeftPoint.y);
+            // Points within the same pixel are not visible, the last point is always drawn
+            if (Math.abs(x - lastX) < 1 && Math.abs(y - lastY) < 1 && i < size - 1) {
+                continue;
+            }
+            path.lineTo(x, y);
+            lastX = x;
+            lastY = y;
+        }
+        canvas.drawPath(path, paint);
+    }
+
+    private ProjectedPoints getProjection(byte zoomLevel) {
+        ProjectedPoints points = projections.get(zoomLevel);
+        if (points == null) {
+            points = new ProjectedPoints(MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize()));
+            projections.put(zoomLevel, points);
+        }
+        points.projectUpTo(size);
+        return points;
+    }
+
+    /**
+     * Pixel positions on the whole map for one zoom level
+     */
+    private class ProjectedPoints {
+
+        final long mapSize;
+        double[] x = new double[0];
+        double[] y = new double[0];
+        int count = 0;
+
+        ProjectedPoints(long mapSize) {
+            this.mapSize = mapSize;
+        }
+
+        void projectUpTo(int size) {
+            if (x.length < size) {
+                x = Arrays.copyOf(x, lat.length);
+                y = Arrays.copyOf(y, lat.length);
+            }
+            for (; count < size; count++) {
+                x[count] = MercatorProjection.longitudeToPixelX(lon[count], mapSize);
+                y[count] = MercatorProjection.latitudeToPixelY(lat[count], mapSize);
+            }
+        }
+    }
+}
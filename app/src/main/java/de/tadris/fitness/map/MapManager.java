@@ -26,6 +26,7 @@ import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.download.TileDownloadLayer;
 
 import de.tadris.fitness.Instance;
+import de.tadris.fitness.map.heatmap.HeatmapLayer;
 import de.tadris.fitness.map.tilesource.FitoTrackTileSource;
 import de.tadris.fitness.map.tilesource.HumanitarianTileSource;
 import de.tadris.fitness.map.tilesource.MapnikTileSource;
@@ -36,7 +37,8 @@ public class MapManager {
     public static TileDownloadLayer setupMap(MapView mapView) {
         FitoTrackTileSource tileSource;
 
-        String chosenTileLayer= Instance.getInstance(mapView.getContext()).userPreferences.getMapStyle();
+        Instance instance = Instance.getInstance(mapView.getContext());
+        String chosenTileLayer= instance.userPreferences.getMapStyle();
         switch (chosenTileLayer){
             case "osm.humanitarian":       tileSource= HumanitarianTileSource.INSTANCE; break;
             case "thunderforest.outdoors": tileSource= ThunderforestTileSource.OUTDOORS; break;
@@ -59,6 +61,10 @@ public class MapManager {
 
         mapView.getLayerManager().getLayers().add(downloadLayer);
 
+        if (instance.userPreferences.showHeatmap()) {
+            mapView.getLayerManager().getLayers().add(new HeatmapLayer(instance.heatmapStore, instance.db.workoutDao(), mapView.getResources()));
+        }
+
         mapView.getLayerManager().redrawLayers();
 
         mapView.setZoomLevel((byte) 18);
@@ -19,15 +19,25 @@
 
 package de.tadris.fitness.map;
 
+import org.mapsforge.core.graphics.Canvas;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.layer.overlay.Polyline;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutTrack;
 
+/**
+ * Draws a workout track. Depending on the zoom level a simplified version of the track is drawn,
+ * so the number of points which are projected in every frame does not depend on the track length.
+ */
 public class WorkoutLayer extends Polyline {
 
     private static Paint getDEFAULT_PAINT_STROKE(int color) {
@@ -38,21 +48,47 @@ public class WorkoutLayer extends Polyline {
         return paint;
     }
 
-    private final List<WorkoutSample> samples;
+    private final WorkoutTrack track;
+    private int[] currentSimplification;
+    private boolean initialized= false;
 
-    public WorkoutLayer(List<WorkoutSample> samples, int color) {
-        this(getDEFAULT_PAINT_STROKE(color), samples);
+    public WorkoutLayer(WorkoutTrack track, int color) {
+        this(getDEFAULT_PAINT_STROKE(color), track);
     }
 
-    private WorkoutLayer(Paint paintStroke, List<WorkoutSample> samples) {
+    private WorkoutLayer(Paint paintStroke, WorkoutTrack track) {
         super(paintStroke, AndroidGraphicFactory.INSTANCE);
-        this.samples = samples;
-        init();
+        this.track = track;
     }
 
-    private void init(){
-        for(WorkoutSample sample : samples){
-            addPoint(sample.toLatLong());
+    @Override
+    public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+        if(track.size() > 0){
+            // A deviation smaller than a pixel is not visible
+            long mapSize= MercatorProjection.getMapSize(zoomLevel, displayModel.getTileSize());
+            double metersPerPixel= MercatorProjection.calculateGroundResolution(track.getLat(0), mapSize);
+            int[] simplification= track.getSimplification(metersPerPixel);
+            if(!initialized || simplification != currentSimplification){
+                setPoints(getPoints(simplification));
+                currentSimplification= simplification;
+                initialized= true;
+            }
+        }
+        super.draw(boundingBox, zoomLevel, canvas, topLeftPoint);
+    }
+
+    private List<LatLong> getPoints(int[] simplification){
+        if(simplification == null){
+            List<LatLong> points= new ArrayList<>(track.size());
+            for(int i= 0; i < track.size(); i++){
+                points.add(track.getLatLong(i));
+            }
+            return points;
+        }
+        List<LatLong> points= new ArrayList<>(simplification.length);
+        for(int index : simplification){
+            points.add(track.getLatLong(index));
         }
+        return points;
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.map.heatmap;
+
+import android.content.res.Resources;
+import android.graphics.drawable.BitmapDrawable;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.tadris.fitness.data.WorkoutDao;
+
+/**
+ * Draws the tiles of the {@link HeatmapStore}. Tiles are read and colored on a background thread
+ * and kept in memory as bitmaps, so drawing a frame only draws a few bitmaps.
+ */
+public class HeatmapLayer extends Layer {
+
+    private static final String TAG = "HeatmapLayer";
+
+    private static final int MAX_CACHED_TILES = 32;
+
+    /**
+     * Number of workouts at which a pixel gets the full color
+     */
+    private static final int SATURATION = 10;
+    private static final int COLOR = 0xFF2C00;
+
+    private final HeatmapStore store;
+    private final Resources resources;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Heatmap"));
+    private final Set<Long> loadingTiles = new HashSet<>();
+    private final Set<Long> emptyTiles = new HashSet<>();
+    private final LruCache<Long, Bitmap> tiles = new LruCache<Long, Bitmap>(MAX_CACHED_TILES) {
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+            oldValue.decrementRefCount();
+        }
+    };
+    private int loadedVersion;
+
+    /**
+     * @param dao is used to add workouts which are missing in the heatmap before the first tile is drawn
+     */
+    public HeatmapLayer(HeatmapStore store, WorkoutDao dao, Resources resources) {
+        this.store = store;
+        this.resources = resources;
+        this.loadedVersion = store.getVersion();
+        executor.execute(() -> {
+            try {
+                store.sync(dao);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot update heatmap", e);
+            }
+            requestRedraw();
+        });
+    }
+
+    @Override
+    public synchronized void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+        if (zoomLevel < HeatmapStore.MIN_ZOOM) {
+            return;
+        }
+        if (store.getVersion() != loadedVersion) {
+            loadedVersion = store.getVersion();
+            tiles.evictAll();
+            emptyTiles.clear();
+        }
+        int zoom = Math.min(zoomLevel, HeatmapStore.MAX_ZOOM);
+        // Above the maximum zoom the tiles of the maximum zoom are scaled up
+        long drawnTileSize = (long) displayModel.getTileSize() << (zoomLevel - zoom);
+        long tileCount = 1L << zoom;
+
+        long firstX = Math.max(0, (long) Math.floor(topLeftPoint.x / drawnTileSize));
+        long firstY = Math.max(0, (long) Math.floor(topLeftPoint.y / drawnTileSize));
+        long lastX = Math.min(tileCount - 1, (long) Math.floor((topLeftPoint.x + canvas.getWidth()) / drawnTileSize));
+        long lastY = Math.min(tileCount - 1, (long) Math.floor((topLeftPoint.y + canvas.getHeight()) / drawnTileSize));
+
+        for (long x = firstX; x <= lastX; x++) {
+            for (long y = firstY; y <= lastY; y++) {
+                Bitmap bitmap = getTile(zoom, (int) x, (int) y);
+                if (bitmap == null) {
+                    continue;
+                }
+                int left = (int) (x * drawnTileSize - topLeftPoint.x);
+                int top = (int) (y * drawnTileSize - topLeftPoint.y);
+                canvas.drawBitmap(bitmap, 0, 0, HeatmapStore.TILE_SIZE, HeatmapStore.TILE_SIZE,
+                        left, top, left + (int) drawnTileSize, top + (int) drawnTileSize);
+            }
+        }
+    }
+
+    /**
+     * @return the cached bitmap or null if the tile is empty or still loading
+     */
+    private Bitmap getTile(int zoom, int x, int y) {
+        long key = getCacheKey(zoom, x, y);
+        Bitmap bitmap = tiles.get(key);
+        if (bitmap != null || emptyTiles.contains(key) || !loadingTiles.add(key)) {
+            return bitmap;
+        }
+        int version = loadedVersion;
+        executor.execute(() -> {
+            Bitmap loaded = null;
+            try {
+                char[] counts = store.readTile(zoom, x, y);
+                if (counts != null) {
+                    loaded = createBitmap(counts);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot read heatmap tile", e);
+            }
+            synchronized (HeatmapLayer.this) {
+                loadingTiles.remove(key);
+                if (version != loadedVersion) {
+                    // Tile changed while it was loaded
+                    if (loaded != null) {
+                        loaded.decrementRefCount();
+                    }
+                } else if (loaded != null) {
+                    tiles.put(key, loaded);
+                } else {
+                    emptyTiles.add(key);
+                }
+            }
+            requestRedraw();
+        });
+        return null;
+    }
+
+    private Bitmap createBitmap(char[] counts) {
+        int[] colors = new int[counts.length];
+        double logSaturation = Math.log(1 + SATURATION);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                double intensity = Math.min(1, 0.3 + 0.7 * Math.log(1 + counts[i]) / logSaturation);
+                colors[i] = ((int) (intensity * 255) << 24) | COLOR;
+            }
+        }
+        android.graphics.Bitmap bitmap = android.graphics.Bitmap.createBitmap(colors, HeatmapStore.TILE_SIZE, HeatmapStore.TILE_SIZE, android.graphics.Bitmap.Config.ARGB_8888);
+        return AndroidGraphicFactory.convertToBitmap(new BitmapDrawable(resources, bitmap));
+    }
+
+    private static long getCacheKey(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    @Override
+    public synchronized void onDestroy() {
+        executor.shutdownNow();
+        tiles.evictAll();
+        super.onDestroy();
+    }
+
+}
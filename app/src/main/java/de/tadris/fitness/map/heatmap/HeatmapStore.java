@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.map.heatmap;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import de.tadris.fitness.data.SampleCursor;
+import de.tadris.fitness.data.WorkoutDao;
+import de.tadris.fitness.data.WorkoutSample;
+
+/**
+ * Density tiles of all recorded tracks, stored on disk.
+ *
+ * Every tile holds the number of workouts which passed each of its pixels. Tiles exist for the zoom
+ * levels {@link #MIN_ZOOM} to {@link #MAX_ZOOM} and are updated incrementally when a workout is added.
+ * The ids of all included workouts are kept as well, so {@link #sync(WorkoutDao)} can find out
+ * which workouts are missing or were deleted. While a workout is added, a marker file exists. If it is
+ * found later, the app was killed during an update and the heatmap is built again.
+ */
+public class HeatmapStore {
+
+    private static final String TAG = "HeatmapStore";
+
+    public static final int TILE_SIZE = 256;
+    public static final int MIN_ZOOM = 6;
+    public static final int MAX_ZOOM = 16;
+
+    private static final double MAX_LATITUDE = 85.05112877980659;
+
+    private final File directory;
+    private final File idsFile;
+    private final File pendingFile;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "HeatmapStore"));
+    private Set<Long> workoutIds;
+    private volatile int version = 0;
+
+    public HeatmapStore(Context context) {
+        this.directory = new File(context.getFilesDir(), "heatmap");
+        this.idsFile = new File(directory, "workouts");
+        this.pendingFile = new File(directory, "pending");
+    }
+
+    /**
+     * Is increased every time tiles change
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds the workouts which are not part of the heatmap yet. If workouts were deleted, the heatmap is built again.
+     */
+    public synchronized void sync(WorkoutDao dao) throws IOException {
+        Set<Long> stored = getWorkoutIds();
+        long[] ids = dao.getWorkoutIds();
+        Set<Long> existing = new HashSet<>(ids.length);
+        for (long id : ids) {
+            existing.add(id);
+        }
+        if (!existing.containsAll(stored)) {
+            Log.i(TAG, "Workouts were deleted, rebuilding heatmap");
+            clear();
+        }
+        for (long id : ids) {
+            if (!getWorkoutIds().contains(id)) {
+                try (SampleCursor samples = dao.streamSamplesOfWorkout(id)) {
+                    addWorkout(id, samples);
+                }
+            }
+        }
+    }
+
+    public synchronized void addWorkout(long workoutId, SampleCursor samples) throws IOException {
+        int count = samples.getCount();
+        double[] lat = new double[count];
+        double[] lon = new double[count];
+        for (int i = 0; samples.moveToPosition(i); i++) {
+            WorkoutSample sample = samples.getSample();
+            lat[i] = sample.lat;
+            lon[i] = sample.lon;
+        }
+        addWorkout(workoutId, lat, lon);
+    }
+
+    /**
+     * Adds the workout on the thread of the store, so the caller doesn't wait for a running {@link #sync(WorkoutDao)}
+     */
+    public void addWorkoutLater(long workoutId, double[] lat, double[] lon) {
+        executor.execute(() -> {
+            try {
+                addWorkout(workoutId, lat, lon);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot add workout " + workoutId, e);
+            }
+        });
+    }
+
+    public synchronized void addWorkout(long workoutId, double[] lat, double[] lon) throws IOException {
+        if (getWorkoutIds().contains(workoutId)) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        if (!pendingFile.createNewFile()) {
+            throw new IOException("Cannot create " + pendingFile);
+        }
+        try {
+            for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; zoom++) {
+                for (Map.Entry<Long, BitSet> tile : rasterize(lat, lon, zoom).entrySet()) {
+                    long key = tile.getKey();
+                    char[] counts = readTile(zoom, getTileX(key), getTileY(key));
+                    if (counts == null) {
+                        counts = new char[TILE_SIZE * TILE_SIZE];
+                    }
+                    BitSet pixels = tile.getValue();
+                    for (int i = pixels.nextSetBit(0); i >= 0; i = pixels.nextSetBit(i + 1)) {
+                        if (counts[i] < Character.MAX_VALUE) {
+                            counts[i]++;
+                        }
+                    }
+                    writeTile(zoom, getTileX(key), getTileY(key), counts);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(idsFile, true))) {
+                out.writeLong(workoutId);
+            }
+            if (!pendingFile.delete()) {
+                throw new IOException("Cannot delete " + pendingFile);
+            }
+        } catch (IOException e) {
+            // The tiles are partly updated, missing workouts are added again by the next sync
+            clear();
+            throw e;
+        }
+        workoutIds.add(workoutId);
+        version++;
+    }
+
+    /**
+     * @return the counts of the tile row by row or null if no workout passed it
+     */
+    @Nullable
+    public char[] readTile(int zoom, int x, int y) throws IOException {
+        File file = getTileFile(zoom, x, y);
+        if (!file.exists()) {
+            return null;
+        }
+        char[] counts = new char[TILE_SIZE * TILE_SIZE];
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readChar();
+            }
+        }
+        return counts;
+    }
+
+    private void writeTile(int zoom, int x, int y, char[] counts) throws IOException {
+        File file = getTileFile(zoom, x, y);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        // Write to a temporary file first, so the tile is not corrupted if the app is killed
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+            for (char count : counts) {
+                out.writeChar(count);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    private File getTileFile(int zoom, int x, int y) {
+        return new File(directory, zoom + "/" + x + "_" + y);
+    }
+
+    private Set<Long> getWorkoutIds() throws IOException {
+        if (workoutIds == null) {
+            if (pendingFile.exists()) {
+                // Some tiles may already count the workout which was added, the others don't
+                Log.i(TAG, "Unfinished update found, rebuilding heatmap");
+                clear();
+                return workoutIds;
+            }
+            workoutIds = new HashSet<>();
+            if (idsFile.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idsFile)))) {
+                    while (true) {
+                        workoutIds.add(in.readLong());
+                    }
+                } catch (EOFException e) {
+                    // All ids read
+                }
+            }
+        }
+        return workoutIds;
+    }
+
+    private void clear() {
+        deleteRecursively(directory);
+        workoutIds = new HashSet<>();
+        version++;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Draws the track into pixel sets of all touched tiles. Every pixel is only set once per workout.
+     */
+    private static Map<Long, BitSet> rasterize(double[] lat, double[] lon, int zoom) {
+        Map<Long, BitSet> tiles = new HashMap<>();
+        long mapSize = (long) TILE_SIZE << zoom;
+        long lastX = 0, lastY = 0;
+        for (int i = 0; i < lat.length; i++) {
+            long x = getPixelX(lon[i], mapSize);
+            long y = getPixelY(lat[i], mapSize);
+            if (i == 0) {
+                setPixel(tiles, x, y);
+            } else {
+                drawLine(tiles, lastX, lastY, x, y);
+            }
+            lastX = x;
+            lastY = y;
+        }
+        return tiles;
+    }
+
+    private static void drawLine(Map<Long, BitSet> tiles, long x0, long y0, long x1, long y1) {
+        // Bresenham
+        long dx = Math.abs(x1 - x0);
+        long dy = -Math.abs(y1 - y0);
+        long sx = x0 < x1 ? 1 : -1;
+        long sy = y0 < y1 ? 1 : -1;
+        long error = dx + dy;
+        while (true) {
+            setPixel(tiles, x0, y0);
+            if (x0 == x1 && y0 == y1) {
+                return;
+            }
+            long e2 = 2 * error;
+            if (e2 >= dy) {
+                error += dy;
+                x0 += sx;
+            }
+            if (e2 <= dx) {
+                error += dx;
+                y0 += sy;
+            }
+        }
+    }
+
+    private static void setPixel(Map<Long, BitSet> tiles, long x, long y) {
+        long key = getTileKey((int) (x / TILE_SIZE), (int) (y / TILE_SIZE));
+        BitSet pixels = tiles.get(key);
+        if (pixels == null) {
+            pixels = new BitSet(TILE_SIZE * TILE_SIZE);
+            tiles.put(key, pixels);
+        }
+        pixels.set((int) (y % TILE_SIZE) * TILE_SIZE + (int) (x % TILE_SIZE));
+    }
+
+    private static long getPixelX(double lon, long mapSize) {
+        double x = (lon + 180) / 360 * mapSize;
+        return Math.min(mapSize - 1, Math.max(0, (long) x));
+    }
+
+    private static long getPixelY(double lat, long mapSize) {
+        double latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        double sinLat = Math.sin(Math.toRadians(latitude));
+        double y = (0.5 - Math.log((1 + sinLat) / (1 - sinLat)) / (4 * Math.PI)) * mapSize;
+        return Math.min(mapSize - 1, Math.max(0, (long) y));
+    }
+
+    static long getTileKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    static int getTileX(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int getTileY(long key) {
+        return (int) key;
+    }
+
+}
@@ -26,14 +26,16 @@ import android.widget.Toast;
 
 import androidx.annotation.StringRes;
 
-import java.util.ArrayList;
+import org.mapsforge.core.model.LatLong;
+
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
+import de.tadris.fitness.data.SampleCursor;
 import de.tadris.fitness.data.Workout;
-import de.tadris.fitness.data.WorkoutSample;
 import de.tadris.fitness.view.ProgressDialogController;
 import de.westnordost.osmapi.OsmConnection;
 import de.westnordost.osmapi.common.errors.OsmAuthorizationException;
@@ -49,18 +51,16 @@ public class OsmTraceUploader {
     private final Activity activity;
     private final Handler handler;
     private final Workout workout;
-    private final List<WorkoutSample> samples;
     private final GpsTraceDetails.Visibility visibility;
     private final OAuthConsumer consumer;
     private final boolean cut;
     private final ProgressDialogController dialogController;
     private final String description;
 
-    public OsmTraceUploader(Activity activity, Handler handler, Workout workout, List<WorkoutSample> samples, GpsTraceDetails.Visibility visibility, OAuthConsumer consumer, boolean cut, String description) {
+    public OsmTraceUploader(Activity activity, Handler handler, Workout workout, GpsTraceDetails.Visibility visibility, OAuthConsumer consumer, boolean cut, String description) {
         this.activity = activity;
         this.handler = handler;
         this.workout = workout;
-        this.samples = samples;
         this.visibility = visibility;
         this.consumer = consumer;
         this.cut = cut;
@@ -68,22 +68,26 @@ public class OsmTraceUploader {
         this.dialogController= new ProgressDialogController(activity, activity.getString(R.string.uploading));
     }
 
-    private void cut(){
-        cut(false);
-        cut(true);
-    }
-
-    private void cut(boolean last){
+    /**
+     * Finds how many samples have to be cut at the start or the end of the workout
+     *
+     * @return the number of samples to cut
+     */
+    private int getCutCount(SampleCursor samples, boolean last){
+        int size= samples.getCount();
         double distance= 0;
-        int count= 0;
-        WorkoutSample lastSample= samples.remove(last ? samples.size()-1 : 0);
-        while(distance < CUT_DISTANCE){
-            WorkoutSample currentSample= samples.remove(last ? samples.size()-1 : 0);
-            distance+= lastSample.toLatLong().sphericalDistance(currentSample.toLatLong());
+        int count= 1;
+        samples.moveToPosition(last ? size-1 : 0);
+        LatLong lastLatLong= samples.getSample().toLatLong();
+        while(distance < CUT_DISTANCE && count < size){
+            samples.moveToPosition(last ? size-1-count : count);
+            LatLong currentLatLong= samples.getSample().toLatLong();
+            distance+= lastLatLong.sphericalDistance(currentLatLong);
             count++;
-            lastSample= currentSample;
+            lastLatLong= currentLatLong;
         }
         Log.d("Uploader", "Cutted " + (last ? "last" : "first") + " " + count + " Samples (" + distance + " meters)");
+        return count;
     }
 
     public void upload(){
@@ -110,21 +114,27 @@ public class OsmTraceUploader {
     private void executeTask(){
         handler.post(dialogController::show);
         setProgress(0);
-        if(cut){ cut(); }
-        setProgress(20);
-        OsmConnection osm = new OsmConnection(
-                "https://api.openstreetmap.org/api/0.6/", "FitoTrack", consumer);
-
-        List<GpsTrackpoint> trackpoints= new ArrayList<>();
-
-        for(WorkoutSample sample : samples){
-            GpsTrackpoint trackpoint= new GpsTrackpoint(new GpsTraceLatLong(sample));
-            trackpoint.time= new Date(sample.absoluteTime);
-            trackpoint.elevation= (float)sample.elevation;
-            trackpoints.add(trackpoint);
+        try(SampleCursor samples= Instance.getInstance(activity).db.workoutDao().streamSamplesOfWorkout(workout.id)){
+            int from= 0;
+            int to= samples.getCount();
+            if(cut){
+                from= getCutCount(samples, false);
+                to-= getCutCount(samples, true);
+            }
+            setProgress(20);
+            OsmConnection osm = new OsmConnection(
+                    "https://api.openstreetmap.org/api/0.6/", "FitoTrack", consumer);
+
+            // Trackpoints are created while the trace is uploaded
+            List<GpsTrackpoint> trackpoints= samples.asList(sample -> {
+                GpsTrackpoint trackpoint= new GpsTrackpoint(new GpsTraceLatLong(sample));
+                trackpoint.time= new Date(sample.absoluteTime);
+                trackpoint.elevation= (float)sample.elevation;
+                return trackpoint;
+            }).subList(from, Math.max(from, to));
+            setProgress(25);
+            new GpsTracesDao(osm).create(workout.getDateString(), visibility, description, Collections.singletonList("FitoTrack"), trackpoints);
         }
-        setProgress(25);
-        new GpsTracesDao(osm).create(workout.getDateString(), visibility, description, Collections.singletonList("FitoTrack"), trackpoints);
         setProgress(100);
         handler.post(() -> {
             Toast.makeText(activity, R.string.uploadSuccessful, Toast.LENGTH_LONG).show();
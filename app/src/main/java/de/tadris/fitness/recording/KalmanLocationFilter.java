@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.location.Location;
+import android.os.Build;
+
+import de.tadris.fitness.util.LocationKalmanFilter;
+
+/**
+ * Smooths position and speed with a {@link LocationKalmanFilter}, weighted by the accuracy of the fixes.
+ * The result is written into the same location object every time, so filtering doesn't allocate.
+ */
+public class KalmanLocationFilter implements LocationFilter {
+
+    private static final float DEFAULT_ACCURACY = 20; // In meters
+
+    private final LocationKalmanFilter filter = new LocationKalmanFilter();
+    private final Location result = new Location("kalman");
+
+    @Override
+    public Location filter(Location location) {
+        double speedAccuracy = Double.NaN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && location.hasSpeedAccuracy()) {
+            speedAccuracy = location.getSpeedAccuracyMetersPerSecond();
+        }
+        filter.update(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : DEFAULT_ACCURACY,
+                location.hasSpeed() ? location.getSpeed() : Double.NaN,
+                location.hasBearing() ? location.getBearing() : Double.NaN,
+                speedAccuracy);
+
+        result.setTime(location.getTime());
+        result.setLatitude(filter.getLat());
+        result.setLongitude(filter.getLon());
+        result.setAltitude(location.getAltitude());
+        result.setSpeed((float) filter.getSpeed());
+        result.setAccuracy(location.getAccuracy());
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        filter.reset();
+    }
+}
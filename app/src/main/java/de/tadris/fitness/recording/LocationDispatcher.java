@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.location.Location;
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers location fixes to the subscribed {@link LocationListener.LocationChangeListener}s.
+ * <p>
+ * {@link #publish(Location)} only puts the fix into a bounded ring buffer, which is drained by a
+ * dedicated thread, so the GPS callback never waits for a subscriber. If the subscribers cannot
+ * keep up, the oldest fixes are dropped. Subscribers can be added and removed from any thread.
+ */
+public class LocationDispatcher {
+
+    private static final String TAG = "LocationDispatcher";
+
+    private static final int CAPACITY = 64;
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Location[] buffer = new Location[CAPACITY];
+    private int head = 0; // Index of the oldest fix
+    private int size = 0;
+    private long droppedCount = 0;
+
+    public LocationDispatcher() {
+        Thread thread = new Thread(this::dispatchLoop, "LocationDispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The listener is called on the dispatcher thread, it should not touch any views
+     */
+    public void subscribe(LocationListener.LocationChangeListener listener) {
+        subscribe(listener, null);
+    }
+
+    /**
+     * @param handler the listener is called on the thread of this handler, e.g. the main thread
+     */
+    public void subscribe(LocationListener.LocationChangeListener listener, @Nullable Handler handler) {
+        subscriptions.add(new Subscription(listener, handler));
+    }
+
+    public void unsubscribe(LocationListener.LocationChangeListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                // Fixes which were already posted to the handler are not delivered anymore
+                subscription.active = false;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Called by the GPS callback, returns immediately
+     */
+    public void publish(Location location) {
+        synchronized (buffer) {
+            if (size == CAPACITY) {
+                head = (head + 1) % CAPACITY;
+                size--;
+                droppedCount++;
+            }
+            buffer[(head + size) % CAPACITY] = location;
+            size++;
+            buffer.notify();
+        }
+    }
+
+    private Location take() throws InterruptedException {
+        synchronized (buffer) {
+            while (size == 0) {
+                buffer.wait();
+            }
+            Location location = buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % CAPACITY;
+            size--;
+            if (droppedCount > 0) {
+                Log.w(TAG, "Subscribers are too slow, dropped " + droppedCount + " fixes");
+                droppedCount = 0;
+            }
+            return location;
+        }
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (true) {
+                Location location = take();
+                for (Subscription subscription : subscriptions) {
+                    subscription.deliver(location);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Dispatcher thread was interrupted", e);
+        }
+    }
+
+    private static class Subscription {
+
+        final LocationListener.LocationChangeListener listener;
+        @Nullable
+        final Handler handler;
+        volatile boolean active = true;
+
+        Subscription(LocationListener.LocationChangeListener listener, @Nullable Handler handler) {
+            this.listener = listener;
+            this.handler = handler;
+        }
+
+        void deliver(Location location) {
+            if (handler != null) {
+                handler.post(() -> notifyListener(location));
+            } else {
+                notifyListener(location);
+            }
+        }
+
+        private void notifyListener(Location location) {
+            if (!active) {
+                return;
+            }
+            try {
+                listener.onLocationChange(location);
+            } catch (RuntimeException e) {
+                // One failing subscriber must not stop the delivery to the others
+                Log.e(TAG, "Subscriber failed to handle location", e);
+            }
+        }
+    }
+}
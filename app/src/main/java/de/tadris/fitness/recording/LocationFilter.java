@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.location.Location;
+
+/**
+ * Processes the fixes before the {@link WorkoutRecorder} records them
+ */
+public interface LocationFilter {
+
+    /**
+     * The given location is shared with other subscribers and must not be modified
+     *
+     * @return the location to record, which is only valid until the next call
+     */
+    Location filter(Location location);
+
+    void reset();
+
+    /**
+     * Records the fixes as they are
+     */
+    LocationFilter NONE = new LocationFilter() {
+        @Override
+        public Location filter(Location location) {
+            return location;
+        }
+
+        @Override
+        public void reset() {
+        }
+    };
+}
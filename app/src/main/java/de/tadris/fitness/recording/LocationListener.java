@@ -34,6 +34,7 @@ import org.mapsforge.core.model.LatLong;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.R;
+import de.tadris.fitness.data.WorkoutType;
 import de.tadris.fitness.util.NotificationHelper;
 
 public class LocationListener extends Service {
@@ -46,9 +47,14 @@ public class LocationListener extends Service {
         return new LatLong(location.getLatitude(), location.getLongitude());
     }
 
+    /**
+     * Id of the {@link WorkoutType} which is recorded, used for the {@link SamplingPolicy}
+     */
+    public static final String EXTRA_WORKOUT_TYPE = "workoutType";
+
     private static final String TAG = "LocationListener";
     private LocationManager mLocationManager = null;
-    private static final int LOCATION_INTERVAL = 1000;
+    private SamplingPolicy policy = new SamplingPolicy(WorkoutType.OTHER);
 
     private class LocationChangedListener implements android.location.LocationListener {
         final Location mLastLocation;
@@ -60,10 +66,10 @@ public class LocationListener extends Service {
 
         @Override
         public void onLocationChanged(Location location) {
-            Log.i(TAG, "onLocationChanged: " + location);
             mLastLocation.set(location);
-            for(LocationChangeListener listener : Instance.getInstance(getBaseContext()).locationChangeListeners){
-                listener.onLocationChange(location);
+            Instance.getInstance(getBaseContext()).locationDispatcher.publish(location);
+            if (policy.onFix(location.getTime(), location.getSpeed())) {
+                requestLocationUpdates();
             }
         }
 
@@ -95,6 +101,15 @@ public class LocationListener extends Service {
         Log.i(TAG, "onStartCommand");
         super.onStartCommand(intent, flags, startId);
 
+        // The intent is null when the service is restarted, then the policy is kept
+        if (intent != null && intent.hasExtra(EXTRA_WORKOUT_TYPE)) {
+            long oldInterval = policy.getInterval();
+            policy = new SamplingPolicy(WorkoutType.getTypeById(intent.getStringExtra(EXTRA_WORKOUT_TYPE)));
+            if (policy.getInterval() != oldInterval) {
+                requestLocationUpdates();
+            }
+        }
+
         Notification.Builder builder = new Notification.Builder(this)
                 .setContentTitle(getText(R.string.trackerRunning))
                 .setContentText(getText(R.string.trackerRunningMessage))
@@ -113,8 +128,17 @@ public class LocationListener extends Service {
     public void onCreate() {
         Log.i(TAG, "onCreate");
         initializeLocationManager();
+        requestLocationUpdates();
+    }
+
+    /**
+     * Requests location updates in the interval of the policy, replacing the previous request.
+     * The minimum distance is checked by the recorder, fixes are needed while standing still, too.
+     */
+    private void requestLocationUpdates() {
+        Log.i(TAG, "Requesting location updates every " + policy.getInterval() + " ms");
         try {
-            mLocationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, LOCATION_INTERVAL, 0, gpsListener);
+            mLocationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, policy.getInterval(), 0, gpsListener);
         } catch (java.lang.SecurityException ex) {
             Log.i(TAG, "fail to request location update, ignore", ex);
         } catch (IllegalArgumentException ex) {
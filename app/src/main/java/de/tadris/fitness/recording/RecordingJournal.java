@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tadris.fitness.Instance;
+import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutType;
+
+/**
+ * Append-only file which receives every sample while a workout is recorded.
+ *
+ * Writes are buffered and synced to disk in groups, either after {@link #SYNC_SAMPLE_COUNT} samples
+ * or after {@link #SYNC_INTERVAL} milliseconds. If the process dies during a recording, the journal
+ * is left behind and {@link #recoverAll(Context)} saves the workout on the next launch.
+ * A torn record at the end of the file is ignored.
+ */
+class RecordingJournal {
+
+    private static final String TAG = "RecordingJournal";
+    private static final String DIRECTORY = "journal";
+
+    private static final int MAGIC = 0x46544A31; // FTJ1
+
+    private static final byte RECORD_SAMPLE = 1;
+    private static final byte RECORD_RESTART = 2;
+
+    private static final int SYNC_SAMPLE_COUNT = 10;
+    static final int SYNC_INTERVAL = 10000;
+
+    /**
+     * Workouts with less samples are not saved by the recorder either
+     */
+    private static final int MIN_SAMPLE_COUNT = 4;
+
+    private static File openFile;
+
+    private final File file;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+    private int unsyncedSamples = 0;
+    private long lastSync = System.currentTimeMillis();
+    private boolean failed = false;
+
+    private RecordingJournal(File file, Workout workout) throws IOException {
+        this.file = file;
+        this.fileOut = new FileOutputStream(file);
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        out.writeInt(MAGIC);
+        out.writeUTF(workout.getWorkoutType().id);
+        out.writeLong(workout.start);
+        sync();
+    }
+
+    /**
+     * @return the new journal or null if it cannot be created
+     */
+    @Nullable
+    static RecordingJournal create(Context context, Workout workout) {
+        File directory = getDirectory(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Cannot create journal directory");
+            return null;
+        }
+        File file = new File(directory, workout.start + ".journal");
+        try {
+            RecordingJournal journal = new RecordingJournal(file, workout);
+            synchronized (RecordingJournal.class) {
+                openFile = file;
+            }
+            return journal;
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot create journal", e);
+            return null;
+        }
+    }
+
+    synchronized void append(SampleBuffer samples, int index) {
+        if (failed) {
+            return;
+        }
+        try {
+            out.writeByte(RECORD_SAMPLE);
+            out.writeLong(samples.getAbsoluteTime(index));
+            out.writeLong(samples.getRelativeTime(index));
+            out.writeDouble(samples.getLat(index));
+            out.writeDouble(samples.getLon(index));
+            out.writeDouble(samples.getElevation(index));
+            out.writeFloat(samples.getSpeed(index));
+            out.writeFloat(samples.getPressure(index));
+            unsyncedSamples++;
+            if (unsyncedSamples >= SYNC_SAMPLE_COUNT) {
+                sync();
+            } else {
+                syncIfDue();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Discards all samples written so far, e.g. when the recorder clears its first samples
+     */
+    synchronized void restart(long start) {
+        if (failed) {
+            return;
+        }
+        try {
+            out.writeByte(RECORD_RESTART);
+            out.writeLong(start);
+            sync();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Syncs pending samples if the last sync is older than {@link #SYNC_INTERVAL}
+     */
+    synchronized void syncIfDue() {
+        if (failed || unsyncedSamples == 0 || System.currentTimeMillis() - lastSync < SYNC_INTERVAL) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the journal and removes it. Has to be called once the workout is saved or discarded.
+     */
+    synchronized void delete() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot close journal", e);
+        }
+        failed = true;
+        synchronized (RecordingJournal.class) {
+            if (file.equals(openFile)) {
+                openFile = null;
+            }
+        }
+        if (!file.delete()) {
+            Log.w(TAG, "Cannot delete journal " + file);
+        }
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+        unsyncedSamples = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void fail(IOException e) {
+        // The recording itself continues, it is only not protected anymore
+        Log.e(TAG, "Writing journal failed", e);
+        failed = true;
+    }
+
+    /**
+     * Saves the workouts of all journals which were left behind by interrupted recordings.
+     * Has to be called on the database thread.
+     *
+     * @return the number of recovered workouts
+     */
+    static int recoverAll(Context context) {
+        File[] files = getDirectory(context).listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int recovered = 0;
+        for (File file : files) {
+            synchronized (RecordingJournal.class) {
+                if (file.equals(openFile)) {
+                    // Currently recording
+                    continue;
+                }
+            }
+            try {
+                if (recover(context, file)) {
+                    recovered++;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot recover journal " + file, e);
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Cannot delete journal " + file);
+            }
+        }
+        return recovered;
+    }
+
+    private static boolean recover(Context context, File file) throws IOException {
+        Workout workout = new Workout();
+        workout.edited = false;
+        workout.comment = "";
+        List<WorkoutSample> samples = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a journal");
+            }
+            workout.setWorkoutType(WorkoutType.getTypeById(in.readUTF()));
+            workout.start = in.readLong();
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == RECORD_SAMPLE) {
+                        WorkoutSample sample = new WorkoutSample();
+                        sample.absoluteTime = in.readLong();
+                        sample.relativeTime = in.readLong();
+                        sample.lat = in.readDouble();
+                        sample.lon = in.readDouble();
+                        sample.elevation = in.readDouble();
+                        sample.speed = in.readFloat();
+                        sample.tmpPressure = in.readFloat();
+                        samples.add(sample);
+                    } else if (type == RECORD_RESTART) {
+                        workout.start = in.readLong();
+                        samples.clear();
+                    } else {
+                        Log.w(TAG, "Unknown record " + type + " in " + file + ", ignoring the rest");
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // End of the journal, possibly in the middle of a record which was not synced
+            }
+        }
+
+        if (samples.size() < MIN_SAMPLE_COUNT) {
+            return false;
+        }
+        if (Instance.getInstance(context).db.workoutDao().countWorkoutsStartingAt(workout.start) > 0) {
+            // The workout was saved, but the app was killed before the journal was deleted
+            Log.i(TAG, "Workout of " + file + " was already saved");
+            return false;
+        }
+
+        WorkoutSample last = samples.get(samples.size() - 1);
+        workout.end = last.absoluteTime;
+        workout.duration = last.relativeTime;
+        workout.pauseDuration = Math.max(0, workout.end - workout.start - workout.duration);
+
+        Log.i(TAG, "Recovering workout from " + file + " with " + samples.size() + " samples");
+        new WorkoutSaver(context, workout, samples).saveWorkout();
+        return true;
+    }
+
+    private static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY);
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.util.Log;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single timer thread for everything that has to happen at a certain time while recording,
+ * so no thread has to poll. Tasks must be short, they all run on the same thread.
+ */
+public class RecordingTimer {
+
+    private static final String TAG = "RecordingTimer";
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public RecordingTimer() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "RecordingTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Deadlines are re-armed with every fix, cancelled tasks must not pile up in the queue
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return a deadline which runs the task once it is reached, it is not armed yet
+     */
+    public Deadline createDeadline(Runnable task) {
+        return new Deadline(task);
+    }
+
+    /**
+     * Runs the task every period until the returned future is cancelled
+     *
+     * @param period in milliseconds
+     */
+    public ScheduledFuture<?> scheduleTicks(Runnable task, long period) {
+        return executor.scheduleAtFixedRate(guard(task), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * An exception would cancel a periodic task and is not logged by the executor
+     */
+    private static Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Timer task failed", e);
+            }
+        };
+    }
+
+    public class Deadline {
+
+        private final Runnable task;
+        private ScheduledFuture<?> future;
+
+        private Deadline(Runnable task) {
+            this.task = guard(task);
+        }
+
+        /**
+         * Runs the task after the delay, a previously armed time is discarded
+         *
+         * @param delay in milliseconds
+         */
+        public synchronized void arm(long delay) {
+            cancel();
+            future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+}
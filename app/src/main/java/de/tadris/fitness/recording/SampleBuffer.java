@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.tadris.fitness.data.WorkoutSample;
+
+/**
+ * Growable columnar storage for the samples of a running recording.
+ *
+ * Adding a sample only writes into primitive arrays, which are doubled when they are full,
+ * so recording does not allocate an object per fix. Not thread-safe.
+ */
+class SampleBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size = 0;
+    private long[] absoluteTime = new long[INITIAL_CAPACITY];
+    private long[] relativeTime = new long[INITIAL_CAPACITY];
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private double[] lon = new double[INITIAL_CAPACITY];
+    private double[] elevation = new double[INITIAL_CAPACITY];
+    private float[] speed = new float[INITIAL_CAPACITY];
+    private float[] pressure = new float[INITIAL_CAPACITY];
+    private double[] smoothedElevation = new double[INITIAL_CAPACITY];
+
+    void add(long absoluteTime, long relativeTime, double lat, double lon, double elevation, float speed, float pressure) {
+        if (size == this.absoluteTime.length) {
+            grow();
+        }
+        this.absoluteTime[size] = absoluteTime;
+        this.relativeTime[size] = relativeTime;
+        this.lat[size] = lat;
+        this.lon[size] = lon;
+        this.elevation[size] = elevation;
+        this.speed[size] = speed;
+        this.pressure[size] = pressure;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = absoluteTime.length * 2;
+        absoluteTime = Arrays.copyOf(absoluteTime, capacity);
+        relativeTime = Arrays.copyOf(relativeTime, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        lon = Arrays.copyOf(lon, capacity);
+        elevation = Arrays.copyOf(elevation, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        pressure = Arrays.copyOf(pressure, capacity);
+        smoothedElevation = Arrays.copyOf(smoothedElevation, capacity);
+    }
+
+    /**
+     * Keeps the capacity, so the arrays are reused
+     */
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getAbsoluteTime(int index) {
+        return absoluteTime[index];
+    }
+
+    long getRelativeTime(int index) {
+        return relativeTime[index];
+    }
+
+    double getLat(int index) {
+        return lat[index];
+    }
+
+    double getLon(int index) {
+        return lon[index];
+    }
+
+    double getElevation(int index) {
+        return elevation[index];
+    }
+
+    float getSpeed(int index) {
+        return speed[index];
+    }
+
+    /**
+     * @return the pressure in hPa or -1 if no pressure sensor was available
+     */
+    float getPressure(int index) {
+        return pressure[index];
+    }
+
+    /**
+     * @param elevation see {@link WorkoutStatistics.SmoothingListener}
+     */
+    void setSmoothedElevation(int index, double elevation) {
+        smoothedElevation[index] = elevation;
+    }
+
+    /**
+     * Creates the sample objects for {@link WorkoutSaver}. Ids are not set.
+     */
+    List<WorkoutSample> toSamples() {
+        List<WorkoutSample> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            WorkoutSample sample = new WorkoutSample();
+            sample.absoluteTime = absoluteTime[i];
+            sample.relativeTime = relativeTime[i];
+            sample.lat = lat[i];
+            sample.lon = lon[i];
+            sample.elevation = elevation[i];
+            sample.speed = speed[i];
+            sample.tmpPressure = pressure[i];
+            sample.tmpElevation = smoothedElevation[i];
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import de.tadris.fitness.data.WorkoutType;
+
+/**
+ * Decides how often GPS fixes are requested and how far apart recorded samples have to be.
+ *
+ * While moving, fixes are requested about as often as a sample can be recorded at the current speed.
+ * When the user stands still, fixes are requested rarely and the minimum distance grows, so position
+ * jitter does not get recorded. The longest interval stays below the time after which the recorder
+ * considers the signal lost.
+ */
+public class SamplingPolicy {
+
+    public static final long MIN_INTERVAL = 1000;
+    public static final long MAX_MOVING_INTERVAL = 3000;
+    public static final long STATIONARY_INTERVAL = 4000;
+
+    /**
+     * Intervals are multiples of this, small speed changes don't require new location requests
+     */
+    private static final long INTERVAL_STEP = 500;
+
+    /**
+     * Fixes per minimum distance, fixes closer than the minimum distance are dropped by the recorder
+     */
+    private static final double OVERSAMPLING = 1.5;
+
+    private static final double STATIONARY_SPEED = 0.5; // In m/s
+    private static final long STATIONARY_TIME = 15000;
+    private static final double STATIONARY_DISTANCE_FACTOR = 2;
+
+    private static final double SPEED_SMOOTHING = 0.3;
+
+    private final WorkoutType type;
+
+    private double speed = -1;
+    private long slowSince = -1;
+    private boolean stationary;
+    private long interval = MIN_INTERVAL;
+
+    public SamplingPolicy(WorkoutType type) {
+        this.type = type;
+    }
+
+    /**
+     * @param time  time of the fix in milliseconds
+     * @param speed speed of the fix in m/s, 0 if unknown
+     * @return whether the interval changed and location updates have to be requested again
+     */
+    public boolean onFix(long time, float speed) {
+        if (speed >= STATIONARY_SPEED) {
+            slowSince = -1;
+            if (stationary || this.speed < 0) {
+                // React immediately when the user starts moving again
+                this.speed = speed;
+            }
+            stationary = false;
+        } else if (slowSince < 0) {
+            slowSince = time;
+        } else if (time - slowSince >= STATIONARY_TIME) {
+            stationary = true;
+        }
+        if (this.speed < 0) {
+            this.speed = speed;
+        } else {
+            this.speed += SPEED_SMOOTHING * (speed - this.speed);
+        }
+
+        long newInterval = calculateInterval();
+        if (newInterval != interval) {
+            interval = newInterval;
+            return true;
+        }
+        return false;
+    }
+
+    private long calculateInterval() {
+        if (stationary) {
+            return STATIONARY_INTERVAL;
+        }
+        if (speed < STATIONARY_SPEED) {
+            return MAX_MOVING_INTERVAL;
+        }
+        double interval = 1000 * type.minDistance / (speed * OVERSAMPLING);
+        long rounded = (long) (interval / INTERVAL_STEP) * INTERVAL_STEP;
+        return Math.max(MIN_INTERVAL, Math.min(MAX_MOVING_INTERVAL, rounded));
+    }
+
+    /**
+     * @return the interval in milliseconds in which fixes should be requested
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return the distance in meters a sample has to be away from the last one to be recorded
+     */
+    public double getMinDistance() {
+        return stationary ? type.minDistance * STATIONARY_DISTANCE_FACTOR : type.minDistance;
+    }
+
+    public boolean isStationary() {
+        return stationary;
+    }
+
+    public void reset() {
+        speed = -1;
+        slowSince = -1;
+        stationary = false;
+        interval = MIN_INTERVAL;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.tadris.fitness.data.BestEffort;
+import de.tadris.fitness.data.BestEfforts;
+import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutBounds;
+import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutSplit;
+import de.tadris.fitness.data.WorkoutSplits;
+import de.tadris.fitness.util.CalorieCalculator;
+
+/**
+ * Calculates the values of a workout which are derived from its samples, for recorded workouts
+ * by the {@link WorkoutFinalizer} and for stored workouts when they are reprocessed.
+ * Samples are not kept, so a track can be streamed through it.
+ */
+public class WorkoutCalculator {
+
+    private final WorkoutStatistics statistics;
+    private final WorkoutBounds bounds = new WorkoutBounds();
+    private final BestEfforts bestEfforts = new BestEfforts();
+    private final WorkoutSplits[] splits = new WorkoutSplits[WorkoutSplits.SPLIT_LENGTHS.length];
+
+    /**
+     * @param statistics statistics which report finished samples to {@link #addFinishedSample}
+     */
+    WorkoutCalculator(WorkoutStatistics statistics) {
+        this.statistics = statistics;
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = new WorkoutSplits(WorkoutSplits.SPLIT_LENGTHS[i]);
+        }
+    }
+
+    /**
+     * For samples which were stored before, their elevation is already smoothed
+     */
+    public static WorkoutCalculator forStoredSamples() {
+        return new WorkoutCalculator(new WorkoutStatistics(null, false));
+    }
+
+    /**
+     * Samples have to be added in the order they were recorded
+     */
+    public void addStoredSample(WorkoutSample sample) {
+        statistics.add(sample.relativeTime, sample.lat, sample.lon, sample.elevation, sample.speed, -1);
+        addFinishedSample(sample, sample.elevation);
+    }
+
+    /**
+     * @param elevation the smoothed elevation
+     */
+    void addFinishedSample(WorkoutSample sample, double elevation) {
+        bounds.add(sample.lat, sample.lon);
+        bestEfforts.add(sample.lat, sample.lon, sample.relativeTime);
+        for (WorkoutSplits unitSplits : splits) {
+            unitSplits.add(sample.lat, sample.lon, elevation, sample.relativeTime);
+        }
+    }
+
+    public int getSampleCount() {
+        return statistics.getSampleCount();
+    }
+
+    /**
+     * Sets all calculated values of the workout, the statistics have to be finished
+     */
+    public void applyTo(Workout workout, double weight) {
+        workout.length = (int) statistics.getDistance();
+        workout.avgSpeed = ((double) workout.length) / ((double) workout.duration / 1000);
+        workout.avgPace = ((double) workout.duration / 1000 / 60) / ((double) workout.length / 1000);
+        workout.topSpeed = statistics.getTopSpeed();
+        workout.ascent = (float) statistics.getAscent();
+        workout.descent = (float) statistics.getDescent();
+        // Ascent has to be set previously
+        workout.calorie = CalorieCalculator.calculateCalories(workout, weight);
+        bounds.applyTo(workout);
+    }
+
+    public BestEffort[] getBestEfforts(Workout workout) {
+        return bestEfforts.create(workout.id, workout.workoutTypeId);
+    }
+
+    /**
+     * @return the splits for all {@link WorkoutSplits#SPLIT_LENGTHS}
+     */
+    public WorkoutSplit[] getSplits(long workoutId) {
+        List<WorkoutSplit> result = new ArrayList<>();
+        for (WorkoutSplits unitSplits : splits) {
+            result.addAll(Arrays.asList(unitSplits.create(workoutId)));
+        }
+        return result.toArray(new WorkoutSplit[0]);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.hardware.SensorManager;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.tadris.fitness.data.BestEffort;
+import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutSplit;
+import de.tadris.fitness.util.AltitudeCorrection;
+
+/**
+ * Calculates all values of a recorded workout in a single pass over its samples.
+ * <p>
+ * Samples with the same time are removed in place. The statistics and the smoothed elevation
+ * come from {@link WorkoutStatistics}, the values of the workout from {@link WorkoutCalculator}.
+ * If the recorder already accumulated the statistics while recording, they are reused and only the
+ * values which are stored per sample are calculated.
+ */
+class WorkoutFinalizer implements WorkoutStatistics.SmoothingListener {
+
+    private static final String TAG = "WorkoutFinalizer";
+
+    private final Workout workout;
+    private final List<WorkoutSample> samples;
+    @Nullable
+    private final AltitudeCorrection altitudeCorrection;
+    private final WorkoutStatistics statistics;
+    private final boolean seeded;
+    private final WorkoutCalculator calculator;
+
+    private int size;
+    private double[] lat;
+    private double[] lon;
+
+    private WorkoutSample[] finishedSamples;
+
+    /**
+     * @param samples            the recorded samples, the list is modified
+     * @param altitudeCorrection correction of the GPS elevation, null if it is not available
+     * @param statistics         the finished statistics of the samples, which has to contain the smoothed
+     *                           elevation in {@link WorkoutSample#tmpElevation}, or null to calculate them
+     */
+    WorkoutFinalizer(Workout workout, List<WorkoutSample> samples, @Nullable AltitudeCorrection altitudeCorrection,
+                     @Nullable WorkoutStatistics statistics) {
+        this.workout = workout;
+        this.samples = samples;
+        this.altitudeCorrection = altitudeCorrection;
+        this.seeded = statistics != null && statistics.isFinished() && statistics.getSampleCount() == samples.size();
+        this.statistics = seeded ? statistics : new WorkoutStatistics(this);
+        this.calculator = new WorkoutCalculator(this.statistics);
+    }
+
+    /**
+     * Sets the ids of the samples and all calculated values of the workout. The id of the workout has to be set before.
+     */
+    void finish(double weight) {
+        int count = samples.size();
+        lat = new double[count];
+        lon = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            WorkoutSample sample = samples.get(i);
+            if (size > 0 && sample.absoluteTime == samples.get(size - 1).absoluteTime) {
+                Log.i(TAG, "Removed sample at " + sample.absoluteTime + " rel: " + samples.get(size - 1).relativeTime + "; " + sample.relativeTime);
+                continue;
+            }
+            samples.set(size, sample);
+            sample.id = workout.id + i + 1;
+            sample.workoutId = workout.id;
+            lat[size] = sample.lat;
+            lon[size] = sample.lon;
+            size++;
+
+            if (seeded) {
+                onSampleFinished(size - 1, sample.tmpElevation);
+            } else {
+                statistics.add(sample.relativeTime, sample.lat, sample.lon, sample.elevation, sample.speed, sample.tmpPressure);
+            }
+        }
+        if (!seeded) {
+            statistics.finish();
+        }
+        if (size < count) {
+            samples.subList(size, count).clear();
+            lat = Arrays.copyOf(lat, size);
+            lon = Arrays.copyOf(lon, size);
+        }
+        calculator.applyTo(workout, weight);
+    }
+
+    @Override
+    public void onSampleFinished(int index, double elevation) {
+        WorkoutSample sample = samples.get(index);
+        sample.elevation = elevation;
+        calculator.addFinishedSample(sample, elevation);
+    }
+
+    /**
+     * @return the remaining samples with their final elevation
+     */
+    WorkoutSample[] getSamples() {
+        if (finishedSamples == null) {
+            finishedSamples = new WorkoutSample[size];
+            for (int i = 0; i < size; i++) {
+                finishedSamples[i] = samples.get(i);
+                finishedSamples[i].elevation = getElevation(finishedSamples[i].elevation);
+            }
+        }
+        return finishedSamples;
+    }
+
+    /**
+     * The smoothed elevation only has to be corrected by a constant, which doesn't change ascent, descent and splits
+     */
+    private double getElevation(double smoothedElevation) {
+        if (statistics.isPressureDataAvailable()) {
+            // The pressure only tells the difference to the average elevation
+            float avgPressure = (float) statistics.getAveragePressure();
+            return smoothedElevation + correct(statistics.getAverageElevation())
+                    - SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, avgPressure);
+        } else {
+            return correct(smoothedElevation);
+        }
+    }
+
+    private double correct(double gpsElevation) {
+        // Please see the AltitudeCorrection.java for the reason of this
+        return altitudeCorrection != null ? altitudeCorrection.getHeightOverSeaLevel(gpsElevation) : gpsElevation;
+    }
+
+    double[] getLat() {
+        return lat;
+    }
+
+    double[] getLon() {
+        return lon;
+    }
+
+    BestEffort[] getBestEfforts() {
+        return calculator.getBestEfforts(workout);
+    }
+
+    WorkoutSplit[] getSplits() {
+        return calculator.getSplits(workout.id);
+    }
+}
@@ -22,18 +22,21 @@ package de.tadris.fitness.recording;
 import android.content.Context;
 import android.graphics.Color;
 import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.widget.Toast;
 
-import org.mapsforge.core.model.LatLong;
-
-import java.util.ArrayList;
 import java.util.List;
 
 import de.tadris.fitness.Instance;
+import de.tadris.fitness.R;
 import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutRepository;
 import de.tadris.fitness.data.WorkoutSample;
 import de.tadris.fitness.data.WorkoutType;
 import de.tadris.fitness.util.CalorieCalculator;
+import de.tadris.fitness.util.GeoUtils;
 
 public class WorkoutRecorder implements LocationListener.LocationChangeListener {
 
@@ -46,21 +49,31 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
 
     private final Context context;
     private final Workout workout;
-    private RecordingState state;
-    private final List<WorkoutSample> samples= new ArrayList<>();
+    private volatile RecordingState state;
+    private final SampleBuffer samples= new SampleBuffer();
     private long time= 0;
     private long pauseTime= 0;
     private long lastResume;
     private long lastPause= 0;
-    private long lastSampleTime= 0;
-    private double distance= 0;
+    private volatile long lastSampleTime= 0;
+    private WorkoutStatistics statistics= new WorkoutStatistics(samples::setSmoothedElevation);
     private boolean hasBegun = false;
+    private RecordingJournal journal;
 
     private static final double SIGNAL_BAD_THRESHOLD= 20; // In meters
     private static final int SIGNAL_LOST_THRESHOLD= 10000; // In milliseconds
-    private Location lastFix= null;
     private final WorkoutRecorderListener workoutRecorderListener;
     private GpsState gpsState= GpsState.SIGNAL_LOST;
+    private volatile LocationFilter locationFilter= new KalmanLocationFilter();
+    /**
+     * Same policy as in the {@link LocationListener}, only used for the minimum distance
+     */
+    private final SamplingPolicy samplingPolicy;
+
+    private final RecordingTimer.Deadline pauseDeadline;
+    private final RecordingTimer.Deadline autoStopDeadline;
+    private final RecordingTimer.Deadline signalLostDeadline;
+    private final RecordingTimer.Deadline journalSyncDeadline;
 
     public WorkoutRecorder(Context context, WorkoutType workoutType, WorkoutRecorderListener workoutRecorderListener) {
         this.context= context;
@@ -74,15 +87,26 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
         this.workout.comment= "";
 
         this.workout.setWorkoutType(workoutType);
+        this.samplingPolicy= new SamplingPolicy(workoutType);
+
+        RecordingTimer timer= Instance.getInstance(context).recordingTimer;
+        pauseDeadline= timer.createDeadline(this::onPauseTimeout);
+        autoStopDeadline= timer.createDeadline(this::onAutoStopTimeout);
+        signalLostDeadline= timer.createDeadline(() -> setGpsState(GpsState.SIGNAL_LOST));
+        journalSyncDeadline= timer.createDeadline(() -> {
+            if(journal != null){
+                journal.syncIfDue();
+            }
+        });
     }
 
     public void start(){
         if(state == RecordingState.IDLE){
             Log.i("Recorder", "Start");
             workout.start= System.currentTimeMillis();
+            journal= RecordingJournal.create(context, workout);
             resume();
-            Instance.getInstance(context).locationChangeListeners.add(this);
-            startWatchdog();
+            Instance.getInstance(context).locationDispatcher.subscribe(this);
         }else if(state == RecordingState.PAUSED){
             resume();
         }else if(state != RecordingState.RUNNING){
@@ -94,54 +118,45 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
         return state == RecordingState.RUNNING || state == RecordingState.PAUSED;
     }
 
-    private void startWatchdog(){
-        new Thread(() -> {
-            try {
-                while (isActive()){
-                    checkSignalState();
-                    synchronized (samples){
-                        if(samples.size() > 2){
-                            long timeDiff= System.currentTimeMillis() - lastSampleTime;
-                            if(timeDiff > AUTO_STOP_TIMEOUT){
-                                if(isActive()){
-                                    stop();
-                                    save();
-                                    workoutRecorderListener.onAutoStop();
-                                }
-                            }else if(timeDiff > PAUSE_TIME){
-                                if (state == RecordingState.RUNNING && gpsState != GpsState.SIGNAL_LOST) {
-                                    pause();
-                                }
-                            }else{
-                                if(state == RecordingState.PAUSED){
-                                    resume();
-                                }
-                            }
-                        }
-                    }
-                    Thread.sleep(5000);
-                }
-            } catch (InterruptedException e) {
-                Log.e("WorkoutWatchdog", "Watchdog thread was interrupted: " + e.getMessage());
+    /**
+     * Called when no sample was recorded for {@link #PAUSE_TIME}
+     */
+    private void onPauseTimeout(){
+        synchronized (samples){
+            if (samples.size() > 2 && state == RecordingState.RUNNING && gpsState != GpsState.SIGNAL_LOST) {
+                pause();
             }
-        }, "WorkoutWatchdog").start();
+        }
     }
 
-    private void checkSignalState(){
-        if(lastFix==null){
-            return;
-        }
-        GpsState state;
-        if(System.currentTimeMillis() - lastFix.getTime() > SIGNAL_LOST_THRESHOLD){
-            state= GpsState.SIGNAL_LOST;
-        }else if(lastFix.getAccuracy() > SIGNAL_BAD_THRESHOLD){
-            state= GpsState.SIGNAL_BAD;
-        }else{
-            state= GpsState.SIGNAL_OKAY;
+    /**
+     * Called when no sample was recorded for {@link #AUTO_STOP_TIMEOUT}
+     */
+    private void onAutoStopTimeout(){
+        synchronized (samples){
+            if(samples.size() > 2 && isActive()){
+                stop();
+                save();
+                workoutRecorderListener.onAutoStop();
+            }
         }
-        if(state != gpsState){
-            workoutRecorderListener.onGPSStateChanged(gpsState, state);
+    }
+
+    private void checkSignalState(Location fix){
+        // The signal is lost when no fix arrives in time
+        signalLostDeadline.arm(SIGNAL_LOST_THRESHOLD);
+        setGpsState(fix.getAccuracy() > SIGNAL_BAD_THRESHOLD ? GpsState.SIGNAL_BAD : GpsState.SIGNAL_OKAY);
+    }
+
+    private synchronized void setGpsState(GpsState state){
+        if(state != gpsState && isActive()){
+            GpsState oldState= gpsState;
             gpsState= state;
+            workoutRecorderListener.onGPSStateChanged(oldState, state);
+            if(oldState == GpsState.SIGNAL_LOST && System.currentTimeMillis() - lastSampleTime > PAUSE_TIME){
+                // The pause was skipped while the signal was lost
+                onPauseTimeout();
+            }
         }
     }
 
@@ -173,7 +188,11 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
         workout.duration= time;
         workout.pauseDuration= pauseTime;
         state= RecordingState.STOPPED;
-        Instance.getInstance(context).locationChangeListeners.remove(this);
+        pauseDeadline.cancel();
+        autoStopDeadline.cancel();
+        signalLostDeadline.cancel();
+        journalSyncDeadline.cancel();
+        Instance.getInstance(context).locationDispatcher.unsubscribe(this);
     }
 
     public void save(){
@@ -181,11 +200,46 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
             throw new IllegalStateException("Cannot save recording, recorder was not stopped. state = " + state);
         }
         Log.i("Recorder", "Save");
-        synchronized (samples){
-            new WorkoutSaver(context, workout, samples).saveWorkout();
+        Instance.getInstance(context).workoutRepository.execute(() -> {
+            List<WorkoutSample> samples;
+            synchronized (this.samples){
+                statistics.finish();
+                samples= this.samples.toSamples();
+            }
+            new WorkoutSaver(context, workout, samples, statistics).saveWorkout();
+            discardJournal();
+        }, e -> {
+            // The journal is kept, so the workout is recovered on the next start
+            Toast.makeText(context.getApplicationContext(), R.string.errorSaveWorkoutFailed, Toast.LENGTH_LONG).show();
+        });
+    }
+
+    /**
+     * Has to be called if a stopped workout is not saved
+     */
+    public void discard(){
+        discardJournal();
+    }
+
+    private void discardJournal(){
+        if(journal != null){
+            journal.delete();
         }
     }
 
+    /**
+     * Saves workouts whose recording was interrupted because the app was killed
+     *
+     * @param onDone receives the number of recovered workouts on the main thread
+     */
+    public static void recoverInterruptedWorkouts(Context context, WorkoutRepository.Callback<Integer> onDone){
+        Context appContext= context.getApplicationContext();
+        Instance.getInstance(appContext).workoutRepository.execute(() -> {
+            int recovered= RecordingJournal.recoverAll(appContext);
+            new Handler(Looper.getMainLooper()).post(() -> onDone.onResult(recovered));
+        }, onDone::onError);
+    }
+
     public int getSampleCount(){
         synchronized (samples){
             return samples.size();
@@ -194,49 +248,60 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
 
     @Override
     public void onLocationChange(Location location) {
-        lastFix= location;
         if(isActive()){
-            double distance= 0;
+            checkSignalState(location);
+            samplingPolicy.onFix(location.getTime(), location.getSpeed());
+            location= locationFilter.filter(location);
             if(getSampleCount() > 0){
                 // Checks whether the minimum distance to last sample was reached
                 // and if the time difference to the last sample is too small
                 synchronized (samples){
-                    WorkoutSample lastSample= samples.get(samples.size() - 1);
-                    distance= LocationListener.locationToLatLong(location).sphericalDistance(new LatLong(lastSample.lat, lastSample.lon));
-                    long timediff= lastSample.absoluteTime - location.getTime();
-                    if (distance < workout.getWorkoutType().minDistance && timediff < 500) {
+                    int last= samples.size() - 1;
+                    double distance= GeoUtils.sphericalDistance(location.getLatitude(), location.getLongitude(), samples.getLat(last), samples.getLon(last));
+                    long timediff= samples.getAbsoluteTime(last) - location.getTime();
+                    if (distance < samplingPolicy.getMinDistance() && timediff < 500) {
+                        return;
+                    }
+                    if (timediff == 0) {
+                        // Would be removed when saving and must not be counted by the statistics
                         return;
                     }
                 }
             }
             lastSampleTime= System.currentTimeMillis();
+            pauseDeadline.arm(PAUSE_TIME);
+            autoStopDeadline.arm(AUTO_STOP_TIMEOUT);
+            if(state == RecordingState.PAUSED && getSampleCount() > 2){
+                resume();
+            }
             if(state == RecordingState.RUNNING && location.getTime() > workout.start){
-                if(samples.size() == 2 && !hasBegun){
+                if(getSampleCount() == 2 && !hasBegun){
                     initialClearValues();
                     hasBegun = true; // Do not clear a second time
                 }
-                this.distance+= distance;
                 addToSamples(location);
             }
         }
     }
 
     private void addToSamples(Location location){
-        WorkoutSample sample= new WorkoutSample();
-        sample.lat= location.getLatitude();
-        sample.lon= location.getLongitude();
-        sample.elevation= location.getAltitude();
-        sample.speed= location.getSpeed();
-        sample.relativeTime= location.getTime() - workout.start - pauseTime;
-        sample.absoluteTime= location.getTime();
+        float pressure;
         if(Instance.getInstance(context).isPressureAvailable()){
-            sample.tmpPressure= Instance.getInstance(context).lastPressure;
+            pressure= Instance.getInstance(context).lastPressure;
         }else{
-            sample.tmpPressure= -1;
+            pressure= -1;
         }
+        long relativeTime= location.getTime() - workout.start - pauseTime;
         synchronized (samples){
-            samples.add(sample);
+            samples.add(location.getTime(), relativeTime,
+                    location.getLatitude(), location.getLongitude(), location.getAltitude(), location.getSpeed(), pressure);
+            statistics.add(relativeTime, location.getLatitude(), location.getLongitude(), location.getAltitude(), location.getSpeed(), pressure);
+            if(journal != null){
+                journal.append(samples, samples.size() - 1);
+            }
         }
+        // Pending samples are synced even if no further sample arrives
+        journalSyncDeadline.arm(RecordingJournal.SYNC_INTERVAL);
     }
 
     private void initialClearValues(){
@@ -245,18 +310,33 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
         lastPause= 0;
         time= 0;
         pauseTime= 0;
-        this.distance= 0;
-        samples.clear();
+        synchronized (samples){
+            samples.clear();
+            statistics= new WorkoutStatistics(samples::setSmoothedElevation);
+        }
+        if(journal != null){
+            journal.restart(workout.start);
+        }
+    }
+
+    /**
+     * @return the statistics of the samples recorded so far
+     */
+    public WorkoutStatistics.Snapshot getStatistics() {
+        synchronized (samples){
+            return statistics.getSnapshot();
+        }
     }
 
     public int getDistanceInMeters() {
-        return (int)distance;
+        return (int)getStatistics().distance;
     }
 
     private int maxCalories= 0;
     public int getCalories(){
         workout.avgSpeed= getAvgSpeed();
         workout.duration= getDuration();
+        workout.ascent= (float) getStatistics().ascent;
         int calories= CalorieCalculator.calculateCalories(workout, Instance.getInstance(context).userPreferences.getUserWeight());
         if(calories > maxCalories){
             maxCalories= calories;
@@ -269,7 +349,7 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
      * @return avgSpeed in m/s
      */
     public double getAvgSpeed(){
-        return distance / (double)(getDuration() / 1000);
+        return getStatistics().distance / (double)(getDuration() / 1000);
     }
 
     public long getPauseDuration(){
@@ -288,6 +368,14 @@ public class WorkoutRecorder implements LocationListener.LocationChangeListener
         }
     }
 
+    /**
+     * Replaces the filter the fixes go through before they are recorded
+     */
+    public void setLocationFilter(LocationFilter locationFilter){
+        locationFilter.reset();
+        this.locationFilter= locationFilter;
+    }
+
     public void setComment(String comment){
         workout.comment= comment;
     }
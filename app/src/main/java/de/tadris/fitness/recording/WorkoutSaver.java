@@ -20,190 +20,100 @@
 package de.tadris.fitness.recording;
 
 import android.content.Context;
-import android.hardware.SensorManager;
-import android.util.Log;
+
+import androidx.annotation.Nullable;
 
 import java.io.IOException;
 import java.util.List;
 
 import de.tadris.fitness.Instance;
 import de.tadris.fitness.data.AppDatabase;
+import de.tadris.fitness.data.BestEffort;
+import de.tadris.fitness.data.PackedTrack;
+import de.tadris.fitness.data.SimplifiedTrack;
 import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutRoute;
 import de.tadris.fitness.data.WorkoutSample;
+import de.tadris.fitness.data.WorkoutSplit;
 import de.tadris.fitness.util.AltitudeCorrection;
-import de.tadris.fitness.util.CalorieCalculator;
 
 class WorkoutSaver {
 
     private final Context context;
     private final Workout workout;
     private final List<WorkoutSample> samples;
+    @Nullable
+    private final WorkoutStatistics statistics;
     private final AppDatabase db;
 
     public WorkoutSaver(Context context, Workout workout, List<WorkoutSample> samples) {
+        this(context, workout, samples, null);
+    }
+
+    /**
+     * @param statistics the statistics accumulated while recording, see {@link WorkoutFinalizer}
+     */
+    public WorkoutSaver(Context context, Workout workout, List<WorkoutSample> samples, @Nullable WorkoutStatistics statistics) {
         this.context = context;
         this.workout = workout;
         this.samples = samples;
+        this.statistics = statistics;
         db= Instance.getInstance(context).db;
     }
 
     public void saveWorkout(){
-        setIds();
-        clearSamplesWithSameTime();
-        setSimpleValues();
-        setTopSpeed();
-
-        setElevation();
-        setAscentAndDescent();
-
-        setCalories();
-
-        storeInDatabase();
-    }
-
-    private void setIds(){
         workout.id= System.currentTimeMillis();
-        int i= 0;
-        for(WorkoutSample sample : samples) {
-            i++;
-            sample.id = workout.id + i;
-            sample.workoutId = workout.id;
-        }
-    }
-
-    private void clearSamplesWithSameTime(){
-        for(int i= samples.size()-2; i >= 0; i--){
-            WorkoutSample sample= samples.get(i);
-            WorkoutSample lastSample= samples.get(i+1);
-            if(sample.absoluteTime == lastSample.absoluteTime){
-                samples.remove(lastSample);
-                Log.i("WorkoutManager", "Removed samples at " + sample.absoluteTime + " rel: " + sample.relativeTime + "; " + lastSample.relativeTime);
-            }
-        }
-    }
+        WorkoutFinalizer finalizer = new WorkoutFinalizer(workout, samples, getAltitudeCorrection(), statistics);
+        finalizer.finish(Instance.getInstance(context).userPreferences.getUserWeight());
 
-    private void setSimpleValues(){
-        double length= 0;
-        for(int i= 1; i < samples.size(); i++){
-            double sampleLength= samples.get(i - 1).toLatLong().sphericalDistance(samples.get(i).toLatLong());
-            length+= sampleLength;
-        }
-        workout.length= (int)length;
-        workout.avgSpeed= ((double) workout.length) / ((double) workout.duration / 1000);
-        workout.avgPace= ((double)workout.duration / 1000 / 60) / ((double) workout.length / 1000);
+        storeInDatabase(finalizer);
+        updateHeatmap(finalizer.getLat(), finalizer.getLon());
     }
 
-    private void setTopSpeed(){
-        double topSpeed= 0;
-        for(WorkoutSample sample : samples){
-            if(sample.speed > topSpeed){
-                topSpeed= sample.speed;
-            }
+    @Nullable
+    private AltitudeCorrection getAltitudeCorrection() {
+        if (samples.isEmpty()) {
+            return null;
         }
-        workout.topSpeed= topSpeed;
-    }
-
-    private void setElevation() {
-        setCorrectedElevation();
-        setPressureElevation();
-    }
-
-    private void setCorrectedElevation() {
         // Please see the AltitudeCorrection.java for the reason of this
         try {
             int lat = (int) Math.round(samples.get(0).lat);
             int lon = (int) Math.round(samples.get(0).lon);
-            AltitudeCorrection correction = new AltitudeCorrection(context, lat, lon);
-            for (WorkoutSample sample : samples) {
-                sample.elevation = correction.getHeightOverSeaLevel(sample.elevation);
-            }
+            return new AltitudeCorrection(context, lat, lon);
         } catch (IOException e) {
             // If we can't read the file, we cannot correct the values
             e.printStackTrace();
+            return null;
         }
     }
 
-    private void setPressureElevation() {
-        boolean pressureDataAvailable= samples.get(0).tmpPressure != -1;
-
-        if(!pressureDataAvailable){
-            // Because pressure data isn't available we just use the use GPS elevation
-            // in WorkoutSample.elevation which was already set
-            return;
-        }
-
-        double avgElevation= getAverageElevation();
-        double avgPressure=  getAveragePressure();
-
-        for(int i= 0; i < samples.size(); i++){
-            WorkoutSample sample= samples.get(i);
-
-            // Altitude Difference to Average Elevation in meters
-            float altitude_difference =
-                    SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, sample.tmpPressure) -
-                            SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, (float) avgPressure);
-            sample.elevation= avgElevation + altitude_difference;
-        }
-    }
-
-    private double getAverageElevation(){
-        return getAverageElevation(samples);
-    }
-
-    private double getAverageElevation(List<WorkoutSample> samples){
-        double elevationSum= 0; // Sum of elevation
-        for(WorkoutSample sample : samples){
-            elevationSum+= sample.elevation;
-        }
-
-        return elevationSum / samples.size();
-    }
-
-    private double getAveragePressure(){
-        double pressureSum= 0;
-        for(WorkoutSample sample : samples){
-            pressureSum+= sample.tmpPressure;
-        }
-        return pressureSum  / samples.size();
-    }
-
-    private void setAscentAndDescent(){
-        workout.ascent = 0;
-        workout.descent = 0;
-
-        // First calculate a floating average to eliminate pressure noise to influence our ascent/descent
-        int range = 7;
-        for(int i= 0; i < samples.size(); i++){
-            int minIndex = Math.max(i - range, 0);
-            int maxIndex = Math.min(i + range, samples.size() - 1);
-            samples.get(i).tmpElevation = getAverageElevation(samples.subList(minIndex, maxIndex));
-        }
-
-        // Now sum up the ascent/descent
-        for(int i= 0; i < samples.size(); i++) {
-            WorkoutSample sample = samples.get(i);
-            sample.elevation= sample.tmpElevation;
-            if(i >= 1){
-                WorkoutSample lastSample= samples.get(i-1);
-                double diff= sample.elevation - lastSample.elevation;
-                if(diff > 0){
-                    // If this sample is higher than the last one, add difference to ascent
-                    workout.ascent += diff;
-                }else{
-                    // If this sample is lower than the last one, add difference to descent
-                    workout.descent += Math.abs(diff);
-                }
+    private void storeInDatabase(WorkoutFinalizer finalizer){
+        WorkoutSample[] samples = finalizer.getSamples();
+        SimplifiedTrack[] simplifiedTracks = SimplifiedTrack.create(workout.id, finalizer.getLat(), finalizer.getLon());
+        WorkoutRoute route = WorkoutRoute.create(workout.id, finalizer.getLat(), finalizer.getLon(),
+                simplifiedTracks[WorkoutRoute.SIMPLIFICATION_LEVEL].getIndices());
+        BestEffort[] efforts = finalizer.getBestEfforts();
+        WorkoutSplit[] splits = finalizer.getSplits();
+        db.runInTransaction(() -> {
+            if (Instance.getInstance(context).userPreferences.useCompactTrackStorage()) {
+                db.workoutDao().insertWorkoutAndTrack(workout, PackedTrack.pack(workout.id, samples));
+            } else {
+                db.workoutDao().insertWorkoutAndSamples(workout, samples);
             }
-        }
-
-    }
-
-    private void setCalories() {
-        // Ascent has to be set previously
-        workout.calorie = CalorieCalculator.calculateCalories(workout, Instance.getInstance(context).userPreferences.getUserWeight());
+            db.workoutDao().insertSimplifiedTracks(simplifiedTracks);
+            db.workoutDao().insertWorkoutRoute(route);
+            db.workoutDao().insertBestEfforts(efforts);
+            db.workoutDao().insertSplits(splits);
+        });
     }
 
-    private void storeInDatabase(){
-        db.workoutDao().insertWorkoutAndSamples(workout, samples.toArray(new WorkoutSample[0]));
+    private void updateHeatmap(double[] lat, double[] lon) {
+        Instance instance = Instance.getInstance(context);
+        if (!instance.userPreferences.showHeatmap()) {
+            // Missing workouts are added when the heatmap is shown the next time
+            return;
+        }
+        // Tiles are written on the thread of the heatmap, the database thread is not blocked meanwhile
+        instance.heatmapStore.addWorkoutLater(workout.id, lat, lon);
     }
 }
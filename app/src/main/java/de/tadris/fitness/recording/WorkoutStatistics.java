@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.recording;
+
+import android.hardware.SensorManager;
+
+import androidx.annotation.Nullable;
+
+import de.tadris.fitness.util.GeoUtils;
+
+/**
+ * Accumulates the statistics of a workout while its samples are added, every sample takes constant time.
+ * <p>
+ * The elevation is smoothed with a floating average of {@link #SMOOTHING_RANGE} samples in each direction,
+ * so a sample is finished and counted for ascent and descent when the sample {@link #SMOOTHING_RANGE}
+ * positions later is added. The elevation is taken from the pressure if the first sample has a pressure,
+ * otherwise from GPS. Samples which were stored before are already smoothed, for them smoothing can be
+ * turned off. Not thread-safe.
+ */
+public class WorkoutStatistics {
+
+    public static final int SMOOTHING_RANGE = 7;
+
+    /**
+     * Segments with a lower speed don't count as moving time
+     */
+    private static final double MIN_MOVING_SPEED = 0.5; // In m/s
+
+    @Nullable
+    private final SmoothingListener listener;
+    private final int smoothingRange;
+
+    // Unsmoothed elevations of the last samples, enough to move the window by one sample
+    private final double[] window;
+    private double windowSum;
+    private int windowStart, windowEnd;
+
+    private boolean pressureDataAvailable;
+    private int count;
+    private int finishedCount;
+    private boolean finished;
+    private long lastRelativeTime;
+    private double lastLat, lastLon;
+    private double lastElevation;
+
+    private double distance;
+    private long movingTime;
+    private double topSpeed;
+    private double ascent, descent;
+    private double elevationSum, pressureSum;
+
+    public WorkoutStatistics(@Nullable SmoothingListener listener) {
+        this(listener, true);
+    }
+
+    /**
+     * @param smooth whether the elevation is smoothed, otherwise every sample is finished when it is added
+     */
+    public WorkoutStatistics(@Nullable SmoothingListener listener, boolean smooth) {
+        this.listener = listener;
+        this.smoothingRange = smooth ? SMOOTHING_RANGE : 0;
+        this.window = new double[2 * smoothingRange + 2];
+    }
+
+    /**
+     * Samples have to be added in the order they were recorded, samples with the same time have to be removed before
+     *
+     * @param elevation the GPS elevation
+     * @param pressure  the pressure in hPa or -1 if no pressure sensor is available
+     */
+    public void add(long relativeTime, double lat, double lon, double elevation, double speed, float pressure) {
+        if (finished) {
+            throw new IllegalStateException("Cannot add samples to finished statistics");
+        }
+        if (count == 0) {
+            pressureDataAvailable = pressure != -1;
+        } else {
+            double segmentLength = GeoUtils.sphericalDistance(lastLat, lastLon, lat, lon);
+            long timeDiff = relativeTime - lastRelativeTime;
+            distance += segmentLength;
+            if (timeDiff > 0 && segmentLength / timeDiff * 1000 >= MIN_MOVING_SPEED) {
+                movingTime += timeDiff;
+            }
+        }
+        lastRelativeTime = relativeTime;
+        lastLat = lat;
+        lastLon = lon;
+        topSpeed = Math.max(topSpeed, speed);
+
+        elevationSum += elevation;
+        if (pressureDataAvailable) {
+            pressureSum += pressure;
+            elevation = SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, pressure);
+        }
+        window[count % window.length] = elevation;
+        count++;
+
+        if (count > smoothingRange) {
+            finishSample(count - 1 - smoothingRange, count - 1);
+        }
+    }
+
+    /**
+     * Finishes the last samples, whose windows end before the last sample. No samples can be added afterwards.
+     */
+    public void finish() {
+        while (finishedCount < count) {
+            finishSample(finishedCount, Math.min(finishedCount + smoothingRange, count - 1));
+        }
+        finished = true;
+    }
+
+    /**
+     * @param end end of the averaged samples, exclusive
+     */
+    private void finishSample(int index, int end) {
+        int start = Math.max(index - smoothingRange, 0);
+        while (windowEnd < end) {
+            windowSum += window[windowEnd++ % window.length];
+        }
+        while (windowStart < start) {
+            windowSum -= window[windowStart++ % window.length];
+        }
+        double elevation = end > start ? windowSum / (end - start) : window[index % window.length];
+
+        if (index > 0) {
+            double diff = elevation - lastElevation;
+            if (diff > 0) {
+                ascent += diff;
+            } else {
+                descent -= diff;
+            }
+        }
+        lastElevation = elevation;
+        finishedCount++;
+        if (listener != null) {
+            listener.onSampleFinished(index, elevation);
+        }
+    }
+
+    public int getSampleCount() {
+        return count;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return whether the elevation is calculated from the pressure, relative to the standard atmosphere
+     */
+    public boolean isPressureDataAvailable() {
+        return pressureDataAvailable;
+    }
+
+    /**
+     * @return the average GPS elevation
+     */
+    public double getAverageElevation() {
+        return elevationSum / count;
+    }
+
+    public double getAveragePressure() {
+        return pressureSum / count;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public long getMovingTime() {
+        return movingTime;
+    }
+
+    public double getTopSpeed() {
+        return topSpeed;
+    }
+
+    /**
+     * Only contains finished samples
+     */
+    public double getAscent() {
+        return ascent;
+    }
+
+    /**
+     * Only contains finished samples
+     */
+    public double getDescent() {
+        return descent;
+    }
+
+    public Snapshot getSnapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Immutable copy of the values for displaying them on another thread
+     */
+    public static class Snapshot {
+
+        /**
+         * In meters
+         */
+        public final double distance;
+
+        /**
+         * In milliseconds
+         */
+        public final long movingTime;
+
+        /**
+         * In m/s
+         */
+        public final double topSpeed;
+
+        /**
+         * In meters
+         */
+        public final double ascent, descent;
+
+        private Snapshot(WorkoutStatistics statistics) {
+            distance = statistics.distance;
+            movingTime = statistics.movingTime;
+            topSpeed = statistics.topSpeed;
+            ascent = statistics.ascent;
+            descent = statistics.descent;
+        }
+    }
+
+    public interface SmoothingListener {
+
+        /**
+         * Called when the smoothed elevation of a sample is known
+         *
+         * @param elevation the smoothed elevation, relative to the standard atmosphere if
+         *                  {@link #isPressureDataAvailable()}, otherwise the GPS elevation
+         */
+        void onSampleFinished(int index, double elevation);
+    }
+}
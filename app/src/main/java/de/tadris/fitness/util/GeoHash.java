@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash encoding. All cells with the same prefix are inside the cell of the prefix,
+ * so a range of geohash strings can be looked up with an ordinary index.
+ */
+public class GeoHash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * Every geohash with the given prefix is smaller than prefix + RANGE_END
+     */
+    public static final String RANGE_END = "{";
+
+    private GeoHash() {
+    }
+
+    public static String encode(double lat, double lon, int precision) {
+        long bits = encodeBits(lat, lon, precision);
+        char[] hash = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            hash[i] = BASE32[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Same as {@link #encode(double, double, int)} but returns the interleaved bits instead of a string
+     *
+     * @param precision at most 12
+     */
+    public static long encodeBits(double lat, double lon, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        long bits = 0;
+        for (int bit = 0; bit < 5 * precision; bit++) {
+            if (bit % 2 == 0) {
+                double mid = (minLon + maxLon) / 2;
+                if (lon >= mid) {
+                    bits = (bits << 1) | 1;
+                    minLon = mid;
+                } else {
+                    bits <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) {
+                    bits = (bits << 1) | 1;
+                    minLat = mid;
+                } else {
+                    bits <<= 1;
+                    maxLat = mid;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * @return the longest geohash whose cell contains the whole bounding box,
+     * an empty string if the box is only inside the cell of the whole world
+     */
+    public static String getEnclosingCell(double minLat, double minLon, double maxLat, double maxLon, int maxPrecision) {
+        // A cell is a rectangle, so it contains the box if it contains two opposite corners
+        String min = encode(minLat, minLon, maxPrecision);
+        String max = encode(maxLat, maxLon, maxPrecision);
+        int length = 0;
+        while (length < maxPrecision && min.charAt(length) == max.charAt(length)) {
+            length++;
+        }
+        return min.substring(0, length);
+    }
+
+    /**
+     * @return the width of a cell with the given precision in degrees of longitude
+     */
+    public static double getCellWidth(int precision) {
+        int lonBits = (5 * precision + 1) / 2;
+        return 360d / (1L << lonBits);
+    }
+
+    /**
+     * @return the height of a cell with the given precision in degrees of latitude
+     */
+    public static double getCellHeight(int precision) {
+        int latBits = 5 * precision / 2;
+        return 180d / (1L << latBits);
+    }
+
+    /**
+     * Finds the most precise set of cells which covers the bounding box and has at most maxCells cells
+     *
+     * @param maxPrecision the precision is not increased further than this
+     */
+    public static List<String> getCoveringCells(double minLat, double minLon, double maxLat, double maxLon, int maxPrecision, int maxCells) {
+        int precision = maxPrecision;
+        while (precision > 1 && countCells(minLat, minLon, maxLat, maxLon, precision) > maxCells) {
+            precision--;
+        }
+        double width = getCellWidth(precision);
+        double height = getCellHeight(precision);
+        long firstColumn = (long) Math.floor((minLon + 180) / width);
+        long lastColumn = (long) Math.floor((Math.min(maxLon, 180 - width / 2) + 180) / width);
+        long firstRow = (long) Math.floor((minLat + 90) / height);
+        long lastRow = (long) Math.floor((Math.min(maxLat, 90 - height / 2) + 90) / height);
+
+        List<String> cells = new ArrayList<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            double lat = -90 + (row + 0.5) * height;
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                double lon = -180 + (column + 0.5) * width;
+                cells.add(encode(lat, lon, precision));
+            }
+        }
+        return cells;
+    }
+
+    private static long countCells(double minLat, double minLon, double maxLat, double maxLon, int precision) {
+        double width = getCellWidth(precision);
+        double height = getCellHeight(precision);
+        long columns = (long) Math.floor((maxLon + 180) / width) - (long) Math.floor((minLon + 180) / width) + 1;
+        long rows = (long) Math.floor((maxLat + 90) / height) - (long) Math.floor((minLat + 90) / height) + 1;
+        return columns * rows;
+    }
+
+}
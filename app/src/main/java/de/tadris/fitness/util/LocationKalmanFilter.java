@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.util;
+
+import org.mapsforge.core.util.LatLongUtils;
+
+/**
+ * Constant velocity Kalman filter for GPS fixes.
+ * <p>
+ * Positions are converted to meters east and north of the first fix. Both axes have the same time steps
+ * and measurement noise, so they share one covariance matrix, which is kept in three fields.
+ * Updating takes constant time and doesn't allocate.
+ */
+public class LocationKalmanFilter {
+
+    /**
+     * Variance of the acceleration in (m/s^2)^2, how fast the velocity may change
+     */
+    private static final double ACCELERATION_VARIANCE = 0.5;
+
+    /**
+     * After a longer gap the old state is useless and the filter starts again
+     */
+    private static final long MAX_GAP = 30000; // In milliseconds
+
+    private static final double MIN_ACCURACY = 1; // In meters
+    private static final double DEFAULT_SPEED_ACCURACY = 1; // In m/s
+    private static final double UNKNOWN_SPEED_VARIANCE = 100; // In (m/s)^2
+
+    private static final double METERS_PER_DEGREE = Math.PI / 180 * LatLongUtils.EQUATORIAL_RADIUS;
+
+    private boolean initialized = false;
+    private long time;
+    private double refLat, refLon, metersPerDegreeLon;
+
+    // State: position in meters and velocity in m/s on both axes
+    private double east, north, velocityEast, velocityNorth;
+
+    // Covariance of position and velocity, the same on both axes
+    private double p00, p01, p11;
+
+    public void reset() {
+        initialized = false;
+    }
+
+    /**
+     * @param time          in milliseconds
+     * @param accuracy      horizontal accuracy in meters (68% confidence)
+     * @param speed         measured speed in m/s or NaN if it is not known
+     * @param bearing       direction of the speed in degrees or NaN if it is not known
+     * @param speedAccuracy in m/s or NaN if it is not known
+     */
+    public void update(long time, double lat, double lon, double accuracy, double speed, double bearing, double speedAccuracy) {
+        double positionVariance = square(Math.max(accuracy, MIN_ACCURACY));
+        boolean hasVelocity = !Double.isNaN(speed) && !Double.isNaN(bearing);
+        double measuredEast = 0, measuredNorth = 0;
+        if (hasVelocity) {
+            measuredEast = speed * Math.sin(Math.toRadians(bearing));
+            measuredNorth = speed * Math.cos(Math.toRadians(bearing));
+        }
+        double velocityVariance = square(Double.isNaN(speedAccuracy) ? DEFAULT_SPEED_ACCURACY : Math.max(speedAccuracy, 0.1));
+
+        long dt = time - this.time;
+        if (!initialized || dt > MAX_GAP || dt < 0) {
+            initialized = true;
+            this.time = time;
+            refLat = lat;
+            refLon = lon;
+            metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+            east = 0;
+            north = 0;
+            velocityEast = measuredEast;
+            velocityNorth = measuredNorth;
+            p00 = positionVariance;
+            p01 = 0;
+            p11 = hasVelocity ? velocityVariance : UNKNOWN_SPEED_VARIANCE;
+            return;
+        }
+        this.time = time;
+        predict(dt / 1000d);
+
+        // Position measurement
+        double s = p00 + positionVariance;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+        double y = (lon - refLon) * metersPerDegreeLon - east;
+        east += k0 * y;
+        velocityEast += k1 * y;
+        y = (lat - refLat) * METERS_PER_DEGREE - north;
+        north += k0 * y;
+        velocityNorth += k1 * y;
+        p11 -= k1 * p01;
+        p01 -= k0 * p01;
+        p00 -= k0 * p00;
+
+        if (hasVelocity) {
+            s = p11 + velocityVariance;
+            k0 = p01 / s;
+            k1 = p11 / s;
+            y = measuredEast - velocityEast;
+            east += k0 * y;
+            velocityEast += k1 * y;
+            y = measuredNorth - velocityNorth;
+            north += k0 * y;
+            velocityNorth += k1 * y;
+            p00 -= k0 * p01;
+            p01 -= k0 * p11;
+            p11 -= k1 * p11;
+        }
+    }
+
+    private void predict(double dt) {
+        east += velocityEast * dt;
+        north += velocityNorth * dt;
+        double dt2 = dt * dt;
+        p00 += 2 * dt * p01 + dt2 * p11 + ACCELERATION_VARIANCE * dt2 * dt2 / 4;
+        p01 += dt * p11 + ACCELERATION_VARIANCE * dt2 * dt / 2;
+        p11 += ACCELERATION_VARIANCE * dt2;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public double getLat() {
+        return refLat + north / METERS_PER_DEGREE;
+    }
+
+    public double getLon() {
+        return refLon + east / metersPerDegreeLon;
+    }
+
+    /**
+     * @return the speed in m/s
+     */
+    public double getSpeed() {
+        return Math.hypot(velocityEast, velocityNorth);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.util;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MinHash fingerprints of tracks for finding workouts on the same route.
+ *
+ * A track is turned into the sequence of geohash cells it passes. Every pair of consecutive cells
+ * is one shingle, so the direction of the route is part of the fingerprint. The estimated similarity
+ * of two signatures is the Jaccard similarity of their shingle sets.
+ *
+ * Signatures are split into bands. Tracks with similar signatures very likely share at least one
+ * band, so candidates can be found with an index lookup per band instead of comparing all tracks.
+ */
+public class RouteFingerprint {
+
+    /**
+     * Cells of this precision are about 150 x 150 meters
+     */
+    public static final int CELL_PRECISION = 7;
+
+    public static final int SIGNATURE_SIZE = 30;
+    public static final int BANDS = 10;
+    private static final int ROWS_PER_BAND = SIGNATURE_SIZE / BANDS;
+
+    /**
+     * Two tracks with at least this estimated similarity are on the same route
+     */
+    public static final double SAME_ROUTE_SIMILARITY = 0.6;
+
+    // Changing the seeds or the shingles invalidates all stored signatures
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x46697452L;
+        for (int i = 0; i < SEEDS.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            SEEDS[i] = mix(seed);
+        }
+    }
+
+    private RouteFingerprint() {
+    }
+
+    /**
+     * @param points indices of the points which are used, e.g. a simplification of the track
+     * @return the signature or null if the track has no points
+     */
+    public static int[] compute(double[] lat, double[] lon, int[] points) {
+        Set<Long> shingles = getShingles(lat, lon, points);
+        if (shingles.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            int min = Integer.MAX_VALUE;
+            for (long shingle : shingles) {
+                min = Math.min(min, (int) (mix(shingle ^ SEEDS[i]) >>> 33));
+            }
+            signature[i] = min;
+        }
+        return signature;
+    }
+
+    /**
+     * Collects the pairs of consecutive cells. Segments between the points are followed in steps
+     * of half a cell, so no cell is skipped when the points are far apart.
+     */
+    private static Set<Long> getShingles(double[] lat, double[] lon, int[] points) {
+        Set<Long> shingles = new HashSet<>();
+        double stepLat = GeoHash.getCellHeight(CELL_PRECISION) / 2;
+        double stepLon = GeoHash.getCellWidth(CELL_PRECISION) / 2;
+        long lastCell = -1;
+        for (int i = 0; i < points.length; i++) {
+            int point = points[i];
+            int steps = 1;
+            if (i > 0) {
+                int previous = points[i - 1];
+                double dLat = lat[point] - lat[previous];
+                double dLon = lon[point] - lon[previous];
+                steps = (int) Math.ceil(Math.max(Math.abs(dLat) / stepLat, Math.abs(dLon) / stepLon));
+                steps = Math.max(1, steps);
+            }
+            for (int step = 1; step <= steps; step++) {
+                double cellLat = lat[point], cellLon = lon[point];
+                if (i > 0) {
+                    int previous = points[i - 1];
+                    double fraction = (double) step / steps;
+                    cellLat = lat[previous] + (lat[point] - lat[previous]) * fraction;
+                    cellLon = lon[previous] + (lon[point] - lon[previous]) * fraction;
+                }
+                long cell = GeoHash.encodeBits(cellLat, cellLon, CELL_PRECISION);
+                if (cell != lastCell) {
+                    if (lastCell != -1) {
+                        shingles.add(getShingle(lastCell, cell));
+                    }
+                    lastCell = cell;
+                }
+            }
+        }
+        if (shingles.isEmpty() && lastCell != -1) {
+            // The whole track is inside one cell
+            shingles.add(getShingle(lastCell, lastCell));
+        }
+        return shingles;
+    }
+
+    /**
+     * Cells have 35 bits, so a pair of cells doesn't fit into a long and is hashed
+     */
+    private static long getShingle(long first, long second) {
+        return mix(mix(first) + second);
+    }
+
+    /**
+     * @return the fraction of equal values, an estimate of the Jaccard similarity of the routes
+     */
+    public static double getSimilarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    /**
+     * @return one hash per band
+     */
+    public static int[] getBandHashes(int[] signature) {
+        int[] hashes = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long hash = band;
+            for (int row = 0; row < ROWS_PER_BAND; row++) {
+                hash = mix(hash * 31 + signature[band * ROWS_PER_BAND + row]);
+            }
+            hashes[band] = (int) hash;
+        }
+        return hashes;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(SIGNATURE_SIZE * 4);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] fromBytes(byte[] bytes) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    private static long mix(long z) {
+        // Finalizer of SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
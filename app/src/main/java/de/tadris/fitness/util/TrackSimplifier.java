@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness.util;
+
+import org.mapsforge.core.util.LatLongUtils;
+
+/**
+ * Douglas-Peucker simplification of tracks
+ */
+public class TrackSimplifier {
+
+    private static final double METERS_PER_DEGREE = LatLongUtils.EQUATORIAL_RADIUS * Math.PI / 180;
+
+    private TrackSimplifier() {
+    }
+
+    /**
+     * Simplifies the track once per tolerance. Every level is computed from the previous one,
+     * so the tolerances have to be ascending. The deviations add up: a level is at most the sum of
+     * the tolerances up to it away from the original track.
+     *
+     * @param tolerances maximum distance in meters between a level and the previous one
+     * @return the indices of the kept points for every tolerance
+     */
+    public static int[][] simplify(double[] lat, double[] lon, double[] tolerances) {
+        int[][] levels = new int[tolerances.length][];
+        int[] points = new int[lat.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = i;
+        }
+        for (int level = 0; level < tolerances.length; level++) {
+            points = simplify(lat, lon, points, tolerances[level]);
+            levels[level] = points;
+        }
+        return levels;
+    }
+
+    /**
+     * @param points indices of the points which should be simplified
+     * @return the indices of the kept points
+     */
+    public static int[] simplify(double[] lat, double[] lon, int[] points, double tolerance) {
+        int n = points.length;
+        if (n < 3) {
+            return points.clone();
+        }
+        // Project to a local plane in meters, which is exact enough for the size of a track
+        double lonScale = Math.cos(Math.toRadians(lat[points[0]])) * METERS_PER_DEGREE;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = lon[points[i]] * lonScale;
+            y[i] = lat[points[i]] * METERS_PER_DEGREE;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int[] stack = new int[2 * n];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = n - 1;
+        double toleranceSquared = tolerance * tolerance;
+        int kept = 2;
+        while (stackSize > 0) {
+            int end = stack[--stackSize];
+            int start = stack[--stackSize];
+            double maxDistance = 0;
+            int maxIndex = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distance = getSegmentDistanceSquared(x[i], y[i], x[start], y[start], x[end], y[end]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    maxIndex = i;
+                }
+            }
+            if (maxIndex != -1 && maxDistance > toleranceSquared) {
+                keep[maxIndex] = true;
+                kept++;
+                stack[stackSize++] = start;
+                stack[stackSize++] = maxIndex;
+                stack[stackSize++] = maxIndex;
+                stack[stackSize++] = end;
+            }
+        }
+
+        int[] result = new int[kept];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[j++] = points[i];
+            }
+        }
+        return result;
+    }
+
+    private static double getSegmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+}
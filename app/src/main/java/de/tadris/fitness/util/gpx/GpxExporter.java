@@ -31,30 +31,31 @@ import java.util.ArrayList;
 import java.util.Date;
 
 import de.tadris.fitness.Instance;
+import de.tadris.fitness.data.SampleCursor;
 import de.tadris.fitness.data.Workout;
-import de.tadris.fitness.data.WorkoutSample;
 
 public class GpxExporter {
 
     public static void exportWorkout(Context context, Workout workout, File file) throws IOException {
         XmlMapper mapper= new XmlMapper();
-        mapper.writeValue(file, getGpxFromWorkout(context, workout));
+        try (SampleCursor samples= Instance.getInstance(context).db.workoutDao().streamSamplesOfWorkout(workout.id)) {
+            mapper.writeValue(file, getGpxFromWorkout(workout, samples));
+        }
     }
 
-    private static Gpx getGpxFromWorkout(Context context, Workout workout) {
+    private static Gpx getGpxFromWorkout(Workout workout, SampleCursor samples) {
         Gpx gpx= new Gpx();
         gpx.name= workout.toString();
         gpx.version= "1.1";
         gpx.creator= "FitoTrack";
         gpx.metadata= new Metadata(workout.toString(), workout.comment, getDateTime(workout.start));
         gpx.trk= new ArrayList<>();
-        gpx.trk.add(getTrackFromWorkout(context, workout, 0));
+        gpx.trk.add(getTrackFromWorkout(workout, samples, 0));
 
         return gpx;
     }
 
-    private static Track getTrackFromWorkout(Context context, Workout workout, int number) {
-        WorkoutSample[] samples= Instance.getInstance(context).db.workoutDao().getAllSamplesOfWorkout(workout.id);
+    private static Track getTrackFromWorkout(Workout workout, SampleCursor samples, int number) {
         Track track= new Track();
         track.number= number;
         track.name= workout.toString();
@@ -65,13 +66,10 @@ public class GpxExporter {
         track.trkseg= new ArrayList<>();
 
         TrackSegment segment= new TrackSegment();
-        segment.trkpt= new ArrayList<>();
-
-        for(WorkoutSample sample : samples){
-            segment.trkpt.add(new TrackPoint(sample.lat, sample.lon, sample.elevation,
-                    getDateTime(sample.absoluteTime), "gps",
-                    new TrackPointExtension(sample.speed)));
-        }
+        // Track points are created one by one while the file is written
+        segment.trkpt= samples.asList(sample -> new TrackPoint(sample.lat, sample.lon, sample.elevation,
+                getDateTime(sample.absoluteTime), "gps",
+                new TrackPointExtension(sample.speed)));
 
         track.trkseg.add(segment);
 
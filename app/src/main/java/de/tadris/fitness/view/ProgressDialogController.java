@@ -68,6 +68,15 @@ public class ProgressDialogController {
         infoView.setText(info);
     }
 
+    /**
+     * Lets the user cancel the dialog, e.g. with the back button
+     */
+    public void setOnCancel(Runnable onCancel){
+        dialog.setCancelable(true);
+        dialog.setCanceledOnTouchOutside(false);
+        dialog.setOnCancelListener(d -> onCancel.run());
+    }
+
     public void show(){
         dialog.show();
     }
@@ -29,13 +29,20 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import de.tadris.fitness.R;
-import de.tadris.fitness.data.Workout;
+import de.tadris.fitness.data.WorkoutRepository;
+import de.tadris.fitness.data.WorkoutSummary;
 import de.tadris.fitness.util.unit.UnitUtils;
 
 public class WorkoutAdapter extends RecyclerView.Adapter<WorkoutAdapter.WorkoutViewHolder>{
 
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_CACHED_PAGES = 8;
 
     public static class WorkoutViewHolder extends RecyclerView.ViewHolder{
 
@@ -57,12 +64,65 @@ public class WorkoutAdapter extends RecyclerView.Adapter<WorkoutAdapter.WorkoutV
         }
     }
 
-    private final Workout[] workouts;
+    private final WorkoutRepository repository;
+    private final int count;
     private final WorkoutAdapterListener listener;
+    private final WorkoutSummary[] items;
 
-    public WorkoutAdapter(Workout[] workouts, WorkoutAdapterListener listener) {
-        this.workouts = workouts;
+    // Only the most recently used pages are kept in memory
+    private final Map<Integer, WorkoutSummary[]> pages = new LinkedHashMap<Integer, WorkoutSummary[]>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, WorkoutSummary[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    public WorkoutAdapter(WorkoutRepository repository, int count, WorkoutAdapterListener listener) {
+        this.repository = repository;
+        this.count = count;
+        this.listener = listener;
+        this.items = null;
+    }
+
+    /**
+     * Shows a fixed list of workouts, e.g. search results
+     */
+    public WorkoutAdapter(WorkoutSummary[] items, WorkoutAdapterListener listener) {
+        this.repository = null;
+        this.count = items.length;
         this.listener = listener;
+        this.items = items;
+    }
+
+    /**
+     * @return the workout at this position or null if its page is not loaded yet
+     */
+    private WorkoutSummary getItem(int position) {
+        if (items != null) {
+            return items[position];
+        }
+        int pageIndex = position / PAGE_SIZE;
+        WorkoutSummary[] page = pages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        int index = position % PAGE_SIZE;
+        return index < page.length ? page[index] : null;
+    }
+
+    private void loadPage(int pageIndex) {
+        if (!loadingPages.add(pageIndex)) {
+            return;
+        }
+        int offset = pageIndex * PAGE_SIZE;
+        repository.getWorkoutSummaries(offset, PAGE_SIZE, page -> {
+            loadingPages.remove(pageIndex);
+            pages.put(pageIndex, page);
+            notifyItemRangeChanged(offset, Math.min(PAGE_SIZE, count - offset));
+        });
     }
 
     @Override
@@ -75,7 +135,18 @@ public class WorkoutAdapter extends RecyclerView.Adapter<WorkoutAdapter.WorkoutV
     // Replace the contents of a view (invoked by the layout manager)
     @Override
     public void onBindViewHolder(WorkoutViewHolder holder, final int position) {
-        Workout workout= workouts[position];
+        WorkoutSummary workout= getItem(position);
+        if(workout == null){
+            // Page is loading or the workout was deleted in the meantime
+            holder.dateText.setText("");
+            holder.typeText.setText("");
+            holder.commentText.setText("");
+            holder.lengthText.setText("");
+            holder.timeText.setText("");
+            holder.root.setOnClickListener(null);
+            holder.root.setOnLongClickListener(null);
+            return;
+        }
         holder.dateText.setText(SimpleDateFormat.getDateTimeInstance().format(new Date(workout.start)));
         holder.typeText.setText(workout.getWorkoutType().title);
         if(workout.comment != null){
@@ -99,12 +170,12 @@ public class WorkoutAdapter extends RecyclerView.Adapter<WorkoutAdapter.WorkoutV
     // Return the size of your dataset (invoked by the layout manager)
     @Override
     public int getItemCount() {
-        return workouts.length;
+        return count;
     }
 
     public interface WorkoutAdapterListener{
-        void onItemClick(int pos, Workout workout);
-        void onItemLongClick(int pos, Workout workout);
+        void onItemClick(int pos, WorkoutSummary workout);
+        void onItemLongClick(int pos, WorkoutSummary workout);
     }
 
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.tadris.fitness.util.GeoUtils;
+import de.tadris.fitness.util.LocationKalmanFilter;
+
+public class LocationKalmanFilterTest {
+
+    private static final int COUNT = 1200;
+    private static final double SPEED = 3; // In m/s
+    private static final double NOISE = 5; // In meters
+    private static final double DISTANCE = SPEED * (COUNT - 1);
+
+    @Test
+    public void testWithVelocity() {
+        Result result = replay(true);
+        Assert.assertTrue(result.rawDistance > DISTANCE * 1.5);
+        Assert.assertEquals(DISTANCE, result.filteredDistance, DISTANCE * 0.05);
+        Assert.assertTrue(result.filteredError < result.rawError / 3);
+        Assert.assertTrue(result.speedError < 0.5);
+    }
+
+    @Test
+    public void testPositionOnly() {
+        Result result = replay(false);
+        Assert.assertTrue(result.filteredDistance < result.rawDistance / 2);
+        Assert.assertTrue(result.filteredError < result.rawError * 0.75);
+    }
+
+    @Test
+    public void testRestartsAfterGap() {
+        LocationKalmanFilter filter = new LocationKalmanFilter();
+        filter.update(0, 52.5, 13.4, 5, 3, 90, 0.5);
+        filter.update(1000, 52.5, 13.40004, 5, 3, 90, 0.5);
+        filter.update(120000, 52.6, 13.5, 5, Double.NaN, Double.NaN, Double.NaN);
+        Assert.assertEquals(52.6, filter.getLat(), 0.0000001);
+        Assert.assertEquals(13.5, filter.getLon(), 0.0000001);
+    }
+
+    /**
+     * Run of 20 minutes along a bend with one fix per second and GPS noise of 5 meters
+     *
+     * @param withVelocity whether the fixes contain speed and bearing, like most phones deliver them
+     */
+    private Result replay(boolean withVelocity) {
+        Random random = new Random(1);
+        LocationKalmanFilter filter = new LocationKalmanFilter();
+        double metersPerDegree = Math.PI / 180 * 6378137;
+        double metersPerDegreeLon = metersPerDegree * Math.cos(Math.toRadians(52.5));
+
+        Result result = new Result();
+        double lastRawLat = 0, lastRawLon = 0, lastLat = 0, lastLon = 0;
+        for (int i = 0; i < COUNT; i++) {
+            double heading = i * 0.002;
+            double lat = 52.5 + SPEED * Math.sin(heading) / 0.002 / metersPerDegree;
+            double lon = 13.4 + SPEED * (1 - Math.cos(heading)) / 0.002 / metersPerDegreeLon;
+            double rawLat = lat + random.nextGaussian() * NOISE / metersPerDegree;
+            double rawLon = lon + random.nextGaussian() * NOISE / metersPerDegreeLon;
+
+            if (withVelocity) {
+                double speed = SPEED + random.nextGaussian() * 0.3;
+                double bearing = Math.toDegrees(heading) + random.nextGaussian() * 5;
+                filter.update(i * 1000L, rawLat, rawLon, NOISE, speed, bearing, 0.3);
+            } else {
+                filter.update(i * 1000L, rawLat, rawLon, NOISE, Double.NaN, Double.NaN, Double.NaN);
+            }
+
+            if (i > 0) {
+                result.rawDistance += GeoUtils.sphericalDistance(lastRawLat, lastRawLon, rawLat, rawLon);
+                result.filteredDistance += GeoUtils.sphericalDistance(lastLat, lastLon, filter.getLat(), filter.getLon());
+            }
+            if (i >= 30) {
+                // After the filter settled
+                result.rawError += GeoUtils.sphericalDistance(lat, lon, rawLat, rawLon);
+                result.filteredError += GeoUtils.sphericalDistance(lat, lon, filter.getLat(), filter.getLon());
+                result.speedError += Math.abs(filter.getSpeed() - SPEED) / (COUNT - 30);
+            }
+            lastRawLat = rawLat;
+            lastRawLon = rawLon;
+            lastLat = filter.getLat();
+            lastLon = filter.getLon();
+        }
+        return result;
+    }
+
+    private static class Result {
+        double rawDistance, filteredDistance;
+        double rawError, filteredError;
+        double speedError;
+    }
+
+}
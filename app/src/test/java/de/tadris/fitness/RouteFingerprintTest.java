@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.tadris.fitness.util.RouteFingerprint;
+
+public class RouteFingerprintTest {
+
+    @Test
+    public void testSameRoute() {
+        Random random = new Random(1);
+        int[] first = createSignature(random, 0, 2000);
+        int[] second = createSignature(random, 0, 1500);
+        int[] other = createSignature(random, 1, 2000);
+
+        Assert.assertTrue(RouteFingerprint.getSimilarity(first, second) >= RouteFingerprint.SAME_ROUTE_SIMILARITY);
+        Assert.assertTrue(RouteFingerprint.getSimilarity(first, other) < RouteFingerprint.SAME_ROUTE_SIMILARITY);
+        Assert.assertArrayEquals(first, RouteFingerprint.fromBytes(RouteFingerprint.toBytes(first)));
+    }
+
+    /**
+     * Curve of about 2 km with GPS noise of a few meters
+     */
+    private int[] createSignature(Random random, double phase, int count) {
+        double[] lat = new double[count];
+        double[] lon = new double[count];
+        int[] points = new int[count];
+        for (int i = 0; i < count; i++) {
+            double t = (double) i / count;
+            lat[i] = 52.5 + 0.02 * Math.sin(t * 3 + phase) + random.nextGaussian() * 0.00005;
+            lon[i] = 13.4 + 0.03 * t + random.nextGaussian() * 0.00005;
+            points[i] = i;
+        }
+        return RouteFingerprint.compute(lat, lon, points);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.tadris.fitness.data.WorkoutType;
+import de.tadris.fitness.recording.SamplingPolicy;
+
+public class SamplingPolicyTest {
+
+    @Test
+    public void testIntervalFollowsSpeed() {
+        SamplingPolicy running = new SamplingPolicy(WorkoutType.RUNNING);
+        long time = 0;
+        for (int i = 0; i < 30; i++) {
+            running.onFix(time += 1000, 3);
+        }
+        // 7 m at 3 m/s, 1.5 fixes per minimum distance
+        Assert.assertEquals(1500, running.getInterval());
+
+        SamplingPolicy cycling = new SamplingPolicy(WorkoutType.CYCLING);
+        for (int i = 0; i < 30; i++) {
+            cycling.onFix(time += 1000, 10);
+        }
+        Assert.assertEquals(SamplingPolicy.MIN_INTERVAL, cycling.getInterval());
+
+        SamplingPolicy hiking = new SamplingPolicy(WorkoutType.HIKING);
+        for (int i = 0; i < 30; i++) {
+            hiking.onFix(time += 1000, 1);
+        }
+        Assert.assertEquals(SamplingPolicy.MAX_MOVING_INTERVAL, hiking.getInterval());
+        Assert.assertFalse(hiking.isStationary());
+    }
+
+    @Test
+    public void testStationary() {
+        SamplingPolicy policy = new SamplingPolicy(WorkoutType.RUNNING);
+        long time = 0;
+        for (int i = 0; i < 30; i++) {
+            policy.onFix(time += 1000, 3);
+        }
+        double movingDistance = policy.getMinDistance();
+        for (int i = 0; i < 10; i++) {
+            policy.onFix(time += 1000, 0.2f);
+        }
+        Assert.assertFalse(policy.isStationary());
+        for (int i = 0; i < 5; i++) {
+            policy.onFix(time += 2000, 0.2f);
+        }
+        Assert.assertTrue(policy.isStationary());
+        Assert.assertEquals(SamplingPolicy.STATIONARY_INTERVAL, policy.getInterval());
+        Assert.assertTrue(policy.getMinDistance() > movingDistance);
+
+        // Moving again has to be picked up with the next fix
+        Assert.assertTrue(policy.onFix(time + 4000, 3));
+        Assert.assertFalse(policy.isStationary());
+        Assert.assertEquals(1500, policy.getInterval());
+        Assert.assertEquals(movingDistance, policy.getMinDistance(), 0);
+    }
+
+    @Test
+    public void testSmallSpeedChangesKeepInterval() {
+        SamplingPolicy policy = new SamplingPolicy(WorkoutType.RUNNING);
+        long time = 0;
+        for (int i = 0; i < 30; i++) {
+            policy.onFix(time += 1000, 3);
+        }
+        int changes = 0;
+        for (int i = 0; i < 100; i++) {
+            if (policy.onFix(time += 1500, i % 2 == 0 ? 2.8f : 3.2f)) {
+                changes++;
+            }
+        }
+        Assert.assertEquals(0, changes);
+    }
+}
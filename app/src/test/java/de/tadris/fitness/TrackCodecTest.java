@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import de.tadris.fitness.data.TrackCodec;
+import de.tadris.fitness.data.WorkoutSample;
+
+public class TrackCodecTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        WorkoutSample[] samples = new WorkoutSample[5000];
+        for (int i = 0; i < samples.length; i++) {
+            WorkoutSample sample = new WorkoutSample();
+            sample.id = 1000 + i;
+            sample.absoluteTime = 1580000000000L + i * 1000L;
+            sample.relativeTime = i * 1000L;
+            sample.lat = 52.5 + i * 0.00001;
+            sample.lon = 13.4 - i * 0.00002;
+            sample.elevation = 40 + Math.sin(i / 50d) * 10;
+            sample.speed = 2.5 + (i % 7) * 0.1;
+            samples[i] = sample;
+        }
+
+        byte[] data = TrackCodec.encode(samples);
+        System.out.println("Bytes per sample: " + (double) data.length / samples.length);
+        WorkoutSample[] decoded = TrackCodec.decode(42, data);
+
+        Assert.assertEquals(samples.length, decoded.length);
+        for (int i = 0; i < samples.length; i++) {
+            Assert.assertEquals(42, decoded[i].workoutId);
+            Assert.assertEquals(samples[i].id, decoded[i].id);
+            Assert.assertEquals(samples[i].absoluteTime, decoded[i].absoluteTime);
+            Assert.assertEquals(samples[i].relativeTime, decoded[i].relativeTime);
+            Assert.assertEquals(samples[i].lat, decoded[i].lat, 1e-7);
+            Assert.assertEquals(samples[i].lon, decoded[i].lon, 1e-7);
+            Assert.assertEquals(samples[i].elevation, decoded[i].elevation, 0.01);
+            Assert.assertEquals(samples[i].speed, decoded[i].speed, 0.01);
+        }
+    }
+
+}
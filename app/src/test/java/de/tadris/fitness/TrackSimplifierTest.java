@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 Jannis Scheibe <jannis@tadris.de>
+ *
+ * This file is part of FitoTrack
+ *
+ * FitoTrack is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     FitoTrack is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.tadris.fitness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.tadris.fitness.util.TrackSimplifier;
+
+public class TrackSimplifierTest {
+
+    private static final double METERS_PER_DEGREE = 6378137 * Math.PI / 180;
+    private static final double[] TOLERANCES = {1, 4, 16, 64, 256};
+
+    @Test
+    public void testSingleLevel() {
+        double[][] track = createTrack(20000);
+        int[] all = new int[track[0].length];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        for (double tolerance : TOLERANCES) {
+            int[] points = TrackSimplifier.simplify(track[0], track[1], all, tolerance);
+            checkLevel(track, points);
+            Assert.assertTrue(getMaxDeviation(track, points) <= tolerance + 1e-6);
+        }
+    }
+
+    /**
+     * Every level is simplified from the previous one, so the deviations of the levels add up
+     */
+    @Test
+    public void testLevels() {
+        double[][] track = createTrack(20000);
+        int[][] levels = TrackSimplifier.simplify(track[0], track[1], TOLERANCES);
+        double toleranceSum = 0;
+        for (int level = 0; level < levels.length; level++) {
+            checkLevel(track, levels[level]);
+            toleranceSum += TOLERANCES[level];
+            double deviation = getMaxDeviation(track, levels[level]);
+            System.out.println("Level " + level + ": " + levels[level].length + " points, max deviation " + deviation + " m");
+            Assert.assertTrue(deviation <= toleranceSum + 1e-6);
+            if (level > 0) {
+                Assert.assertTrue(levels[level].length <= levels[level - 1].length);
+            }
+        }
+    }
+
+    @Test
+    public void testShortTracks() {
+        double[] lat = {52.5, 52.6};
+        double[] lon = {13.4, 13.5};
+        Assert.assertArrayEquals(new int[]{0, 1}, TrackSimplifier.simplify(lat, lon, TOLERANCES)[TOLERANCES.length - 1]);
+        Assert.assertArrayEquals(new int[0], TrackSimplifier.simplify(new double[0], new double[0], TOLERANCES)[0]);
+    }
+
+    private static void checkLevel(double[][] track, int[] points) {
+        Assert.assertEquals(0, points[0]);
+        Assert.assertEquals(track[0].length - 1, points[points.length - 1]);
+        for (int i = 1; i < points.length; i++) {
+            Assert.assertTrue(points[i] > points[i - 1]);
+        }
+    }
+
+    /**
+     * @return the largest distance in meters between a dropped point and the segment which replaced it
+     */
+    private static double getMaxDeviation(double[][] track, int[] points) {
+        double lonScale = Math.cos(Math.toRadians(track[0][0])) * METERS_PER_DEGREE;
+        double max = 0;
+        for (int i = 1; i < points.length; i++) {
+            int start = points[i - 1], end = points[i];
+            double ax = track[1][start] * lonScale, ay = track[0][start] * METERS_PER_DEGREE;
+            double bx = track[1][end] * lonScale, by = track[0][end] * METERS_PER_DEGREE;
+            for (int p = start + 1; p < end; p++) {
+                double px = track[1][p] * lonScale, py = track[0][p] * METERS_PER_DEGREE;
+                double dx = bx - ax, dy = by - ay;
+                double lengthSquared = dx * dx + dy * dy;
+                double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+                max = Math.max(max, Math.hypot(ax + t * dx - px, ay + t * dy - py));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Winding track with steps of a few meters and GPS noise
+     */
+    private static double[][] createTrack(int count) {
+        Random random = new Random(1);
+        double[] lat = new double[count];
+        double[] lon = new double[count];
+        double heading = 0;
+        double north = 0, east = 0;
+        for (int i = 0; i < count; i++) {
+            heading += random.nextGaussian() * 0.2;
+            north += Math.cos(heading) * 3;
+            east += Math.sin(heading) * 3;
+            lat[i] = 52.5 + (north + random.nextGaussian() * 2) / METERS_PER_DEGREE;
+            lon[i] = 13.4 + (east + random.nextGaussian() * 2) / (METERS_PER_DEGREE * Math.cos(Math.toRadians(52.5)));
+        }
+        return new double[][]{lat, lon};
+    }
+
+}